@@ -0,0 +1,63 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A detector without an os behind it that counts its running monitors, so the tests can tell whether
+ * the monitoring was started twice or not stopped.
+ */
+final class CountingThemeDetector extends OsThemeDetector {
+
+    private final AtomicInteger runningMonitors = new AtomicInteger();
+    private boolean monitoring;
+
+    @Override
+    protected boolean queryDark() {
+        return false;
+    }
+
+    @Override
+    protected boolean isMonitoring() {
+        return runningMonitors.get() > 0;
+    }
+
+    // the check and the update aren't atomic on purpose: the detector has to serialize the calls
+    @Override
+    protected void startMonitoring() {
+        if (!monitoring) {
+            monitoring = true;
+            runningMonitors.incrementAndGet();
+        }
+    }
+
+    @Override
+    protected void stopMonitoring() {
+        if (monitoring) {
+            monitoring = false;
+            runningMonitors.decrementAndGet();
+        }
+    }
+
+    int runningMonitors() {
+        return runningMonitors.get();
+    }
+
+    int listenerCount() {
+        return getMetrics().getListenerStatistics().size();
+    }
+}
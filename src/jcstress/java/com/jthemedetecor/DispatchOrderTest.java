@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.jthemedetecor;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.Description;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.JJ_Result;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+/**
+ * Two versions of a value are dispatched concurrently, like the states published by concurrent settles:
+ * the listener may miss the older one, but it must end up with the newer one.
+ * The results are the last delivered value and the number of deliveries.
+ */
+@JCStressTest
+@Description("Dispatching two versions of a value race")
+@Outcome(id = "2, 1", expect = ACCEPTABLE, desc = "The older version has been skipped")
+@Outcome(id = "2, 2", expect = ACCEPTABLE, desc = "Both versions have been delivered in order")
+@Outcome(expect = FORBIDDEN, desc = "The older version has been delivered last")
+@State
+public class DispatchOrderTest {
+
+    private final ListenerDispatcher<Long> dispatcher = new ListenerDispatcher<>();
+    private long lastDelivered;
+    private long deliveries;
+
+    public DispatchOrderTest() {
+        // the slot runs one delivery at a time, so the listener needs no synchronization
+        dispatcher.add(value -> {
+            lastDelivered = value;
+            deliveries++;
+        }, Runnable::run);
+    }
+
+    @Actor
+    public void older() {
+        dispatcher.dispatch(1L, 1);
+    }
+
+    @Actor
+    public void newer() {
+        dispatcher.dispatch(2L, 2);
+    }
+
+    @Arbiter
+    public void arbiter(JJ_Result r) {
+        r.r1 = lastDelivered;
+        r.r2 = deliveries;
+    }
+}
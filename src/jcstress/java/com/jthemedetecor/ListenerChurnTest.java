@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.Description;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.II_Result;
+
+import java.util.function.Consumer;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+/**
+ * The last listener is removed while another one is registered: the monitoring has to go on
+ * for the new listener. The results are the running monitors and the registered listeners.
+ */
+@JCStressTest
+@Description("Registering a listener races with removing the last one")
+@Outcome(id = "1, 1", expect = ACCEPTABLE, desc = "One monitor for the remaining listener")
+@Outcome(id = "0, 1", expect = FORBIDDEN, desc = "The monitoring stopped although a listener is registered")
+@Outcome(id = "2, 1", expect = FORBIDDEN, desc = "The monitoring was started twice")
+@Outcome(expect = FORBIDDEN, desc = "A listener was lost")
+@State
+public class ListenerChurnTest {
+
+    private final CountingThemeDetector detector = new CountingThemeDetector();
+    private final Consumer<Boolean> registered = dark -> { };
+    private final Consumer<Boolean> added = dark -> { };
+
+    public ListenerChurnTest() {
+        detector.registerListener(registered);
+    }
+
+    @Actor
+    public void register() {
+        detector.registerListener(added);
+    }
+
+    @Actor
+    public void remove() {
+        detector.removeListener(registered);
+    }
+
+    @Arbiter
+    public void arbiter(II_Result r) {
+        r.r1 = detector.runningMonitors();
+        r.r2 = detector.listenerCount();
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.Description;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.II_Result;
+
+import java.util.function.Consumer;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+/**
+ * A listener is registered while the detector is closed: either the registration fails, or the listener
+ * is dropped by the close, but no monitor may survive. The results are the running monitors
+ * and the registered listeners.
+ */
+@JCStressTest
+@Description("Registering a listener races with closing the detector")
+@Outcome(id = "0, 0", expect = ACCEPTABLE, desc = "Nothing is left after the close")
+@Outcome(id = "1, .*", expect = FORBIDDEN, desc = "The monitoring survived the close")
+@Outcome(expect = FORBIDDEN, desc = "A listener survived the close")
+@State
+public class RegisterCloseTest {
+
+    private final CountingThemeDetector detector = new CountingThemeDetector();
+    private final Consumer<Boolean> listener = dark -> { };
+
+    @Actor
+    public void register() {
+        try {
+            detector.registerListener(listener);
+        } catch (IllegalStateException e) {
+            // closed already
+        }
+    }
+
+    @Actor
+    public void close() {
+        detector.close();
+    }
+
+    @Arbiter
+    public void arbiter(II_Result r) {
+        r.r1 = detector.runningMonitors();
+        r.r2 = detector.listenerCount();
+    }
+}
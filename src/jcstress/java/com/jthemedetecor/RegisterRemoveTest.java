@@ -0,0 +1,63 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.Description;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.II_Result;
+
+import java.util.function.Consumer;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+/**
+ * The same listener is registered and removed concurrently: whichever wins, the monitoring has to match
+ * the registry. The results are the running monitors and the registered listeners.
+ */
+@JCStressTest
+@Description("Registering and removing the same listener race")
+@Outcome(id = "0, 0", expect = ACCEPTABLE, desc = "Removed after the registration, the monitoring stopped")
+@Outcome(id = "1, 1", expect = ACCEPTABLE, desc = "Removed before the registration, the monitoring runs")
+@Outcome(id = "1, 0", expect = FORBIDDEN, desc = "The monitoring runs without listeners")
+@Outcome(id = "0, 1", expect = FORBIDDEN, desc = "The monitoring stopped although a listener is registered")
+@Outcome(expect = FORBIDDEN, desc = "The monitoring was started twice")
+@State
+public class RegisterRemoveTest {
+
+    private final CountingThemeDetector detector = new CountingThemeDetector();
+    private final Consumer<Boolean> listener = dark -> { };
+
+    @Actor
+    public void register() {
+        detector.registerListener(listener);
+    }
+
+    @Actor
+    public void remove() {
+        detector.removeListener(listener);
+    }
+
+    @Arbiter
+    public void arbiter(II_Result r) {
+        r.r1 = detector.runningMonitors();
+        r.r2 = detector.listenerCount();
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.Description;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.II_Result;
+
+import java.util.function.Consumer;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+/**
+ * A listener is removed while the monitoring is started explicitly, then stopped again: the detector thread
+ * is restarted or kept running, but never left stopped after {@link OsThemeDetector#start()}.
+ * The results are the running monitors after the race, and after {@link OsThemeDetector#stop()}.
+ */
+@JCStressTest
+@Description("Starting the monitoring races with removing the last listener")
+@Outcome(id = "1, 0", expect = ACCEPTABLE, desc = "Monitoring while started, stopped afterwards")
+@Outcome(id = "0, .*", expect = FORBIDDEN, desc = "The monitoring stopped although it was started")
+@Outcome(expect = FORBIDDEN, desc = "The monitoring was started twice or not stopped")
+@State
+public class StartRemoveTest {
+
+    private final CountingThemeDetector detector = new CountingThemeDetector();
+    private final Consumer<Boolean> listener = dark -> { };
+
+    public StartRemoveTest() {
+        detector.registerListener(listener);
+    }
+
+    @Actor
+    public void start() {
+        detector.start();
+    }
+
+    @Actor
+    public void remove() {
+        detector.removeListener(listener);
+    }
+
+    @Arbiter
+    public void arbiter(II_Result r) {
+        r.r1 = detector.runningMonitors();
+        detector.stop();
+        r.r2 = detector.runningMonitors();
+    }
+}
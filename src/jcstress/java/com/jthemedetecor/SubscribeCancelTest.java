@@ -0,0 +1,81 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+package com.jthemedetecor;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.Description;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.II_Result;
+
+import java.util.concurrent.Flow;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+/**
+ * A subscription to the theme states is cancelled while it registers its listener: whichever comes first,
+ * the listener mustn't stay registered. The results are the running monitors and the registered listeners.
+ */
+@JCStressTest
+@Description("Starting and cancelling a subscription to the theme states race")
+@Outcome(id = "0, 0", expect = ACCEPTABLE, desc = "The listener has been removed, or never registered")
+@Outcome(expect = FORBIDDEN, desc = "The cancelled subscription has left its listener registered")
+@State
+public class SubscribeCancelTest {
+
+    private final CountingThemeDetector detector = new CountingThemeDetector();
+    private Runnable start;
+    private Flow.Subscription subscription;
+
+    public SubscribeCancelTest() {
+        // the executor only captures the registration, which the first actor runs
+        detector.themeStates(task -> start = task).subscribe(new Flow.Subscriber<ThemeState>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                SubscribeCancelTest.this.subscription = subscription;
+            }
+
+            @Override
+            public void onNext(ThemeState item) {
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+    }
+
+    @Actor
+    public void start() {
+        start.run();
+    }
+
+    @Actor
+    public void cancel() {
+        subscription.cancel();
+    }
+
+    @Arbiter
+    public void arbiter(II_Result r) {
+        r.r1 = detector.runningMonitors();
+        r.r2 = detector.listenerCount();
+    }
+}
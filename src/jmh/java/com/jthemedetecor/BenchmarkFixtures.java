@@ -0,0 +1,205 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.jthemedetecor;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Stand-ins for the os, so the backends can be benchmarked on any Linux machine.
+ */
+final class BenchmarkFixtures {
+
+    static final String GSETTINGS_LISTING = String.join("\n",
+            "org.gnome.desktop.interface accent-color 'blue'",
+            "org.gnome.desktop.interface color-scheme 'prefer-dark'",
+            "org.gnome.desktop.interface cursor-size 24",
+            "org.gnome.desktop.interface cursor-theme 'Adwaita'",
+            "org.gnome.desktop.interface font-name 'Cantarell 11'",
+            "org.gnome.desktop.interface gtk-theme 'Adwaita'",
+            "org.gnome.desktop.interface icon-theme 'Adwaita'",
+            "org.gnome.desktop.interface text-scaling-factor 1.0",
+            "");
+
+    private BenchmarkFixtures() {
+    }
+
+    /**
+     * Answers {@code gsettings list-recursively} with a fixed listing; {@code gsettings monitor}
+     * never prints anything.
+     */
+    static GnomeInterfaceMonitor.CommandRunner fakeGsettings() {
+        return command -> command.startsWith("gsettings monitor") ?
+                new FakeProcess(null) :
+                new FakeProcess(GSETTINGS_LISTING.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Writes a dconf database holding the two theme keys of the interface directory.
+     */
+    static byte[] dconfDatabase(String gtkTheme, String colorScheme) {
+        final String directory = "/org/gnome/desktop/interface/";
+        final List<GvdbItem> items = new ArrayList<>();
+        final GvdbItem directoryItem = new GvdbItem(directory, directory, null, 'L', null);
+        items.add(directoryItem);
+        items.add(new GvdbItem(directory + "gtk-theme", "gtk-theme", directoryItem, 'v', gtkTheme));
+        items.add(new GvdbItem(directory + "color-scheme", "color-scheme", directoryItem, 'v', colorScheme));
+
+        final int buckets = items.size();
+        items.sort(Comparator.comparingInt(item -> Integer.remainderUnsigned(item.hash, buckets)));
+
+        final int tableStart = 24;
+        final int itemsStart = tableStart + 8 + buckets * 4;
+        final int tableEnd = itemsStart + items.size() * 24;
+        final ByteBuffer buffer = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put("GVariant".getBytes(StandardCharsets.US_ASCII)).putInt(0).putInt(0).putInt(tableStart).putInt(tableEnd);
+        buffer.putInt(0).putInt(buckets);
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int first = 0;
+            while (first < items.size() && Integer.remainderUnsigned(items.get(first).hash, buckets) < bucket) {
+                first++;
+            }
+            buffer.putInt(first);
+        }
+
+        int dataPosition = tableEnd;
+        for (GvdbItem item : items) {
+            final byte[] key = item.keySegment.getBytes(StandardCharsets.UTF_8);
+            putAt(buffer, dataPosition, key);
+            final int keyStart = dataPosition;
+            dataPosition += key.length;
+            int valueStart = 0;
+            int valueEnd = 0;
+            if (item.value != null) {
+                // a variant holding a string: the nul-terminated string, a zero byte and the type
+                final byte[] value = (item.value + "\0\0s").getBytes(StandardCharsets.UTF_8);
+                valueStart = dataPosition;
+                putAt(buffer, dataPosition, value);
+                dataPosition += value.length;
+                valueEnd = dataPosition;
+            }
+            buffer.putInt(item.hash)
+                    .putInt(item.parent == null ? -1 : items.indexOf(item.parent))
+                    .putInt(keyStart)
+                    .putShort((short) key.length)
+                    .put((byte) item.type)
+                    .put((byte) 0)
+                    .putInt(valueStart)
+                    .putInt(valueEnd);
+        }
+        final byte[] bytes = new byte[dataPosition];
+        buffer.position(0);
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static void putAt(ByteBuffer buffer, int position, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            buffer.put(position + i, bytes[i]);
+        }
+    }
+
+    private static final class GvdbItem {
+        final int hash;
+        final String keySegment;
+        final GvdbItem parent;
+        final char type;
+        final String value;
+
+        GvdbItem(String fullKey, String keySegment, GvdbItem parent, char type, String value) {
+            int hash = 5381;
+            for (byte b : fullKey.getBytes(StandardCharsets.UTF_8)) {
+                hash = hash * 33 + b;
+            }
+            this.hash = hash;
+            this.keySegment = keySegment;
+            this.parent = parent;
+            this.type = type;
+            this.value = value;
+        }
+    }
+
+    /**
+     * A process printing the given output, or blocking until it is destroyed if there is none.
+     */
+    private static final class FakeProcess extends Process {
+
+        private final CountDownLatch destroyed = new CountDownLatch(1);
+        private final InputStream output;
+
+        FakeProcess(byte[] output) {
+            this.output = output != null ? new ByteArrayInputStream(output) : new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    try {
+                        destroyed.await();
+                        return -1;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return OutputStream.nullOutputStream();
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return output;
+        }
+
+        @Override
+        public InputStream getErrorStream() {
+            return InputStream.nullInputStream();
+        }
+
+        @Override
+        public int waitFor() throws InterruptedException {
+            destroyed.await();
+            return 0;
+        }
+
+        @Override
+        public int exitValue() {
+            if (destroyed.getCount() > 0) {
+                throw new IllegalThreadStateException();
+            }
+            return 0;
+        }
+
+        @Override
+        public boolean isAlive() {
+            return destroyed.getCount() > 0;
+        }
+
+        @Override
+        public void destroy() {
+            destroyed.countDown();
+        }
+    }
+}
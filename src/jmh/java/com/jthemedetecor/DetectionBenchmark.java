@@ -0,0 +1,99 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.jthemedetecor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The cost of {@link OsThemeDetector#isDark()} per Linux backend, with the os replaced by fakes:
+ * once when the os is queried, once when the monitored state is read.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DetectionBenchmark {
+
+    private final Consumer<Boolean> listener = dark -> {
+    };
+
+    private Path databaseDirectory;
+
+    private OsThemeDetector gnome;
+    private OsThemeDetector gnomeMonitored;
+    private OsThemeDetector dconf;
+    private OsThemeDetector dconfMonitored;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        gnome = new GnomeThemeDetector(new GnomeInterfaceMonitor(BenchmarkFixtures.fakeGsettings()));
+        gnomeMonitored = new GnomeThemeDetector(new GnomeInterfaceMonitor(BenchmarkFixtures.fakeGsettings()));
+        gnomeMonitored.registerListener(listener);
+
+        databaseDirectory = Files.createTempDirectory("dconf");
+        final Path databaseFile = databaseDirectory.resolve("user");
+        Files.write(databaseFile, BenchmarkFixtures.dconfDatabase("Adwaita", "prefer-dark"));
+        dconf = new DconfThemeDetector(databaseFile);
+        dconfMonitored = new DconfThemeDetector(databaseFile);
+        dconfMonitored.registerListener(listener);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        gnomeMonitored.removeListener(listener);
+        dconfMonitored.removeListener(listener);
+        Files.deleteIfExists(databaseDirectory.resolve("user"));
+        Files.deleteIfExists(databaseDirectory);
+    }
+
+    @Benchmark
+    public boolean gnomeQuery() {
+        return gnome.isDark();
+    }
+
+    @Benchmark
+    public boolean gnomeMonitored() {
+        return gnomeMonitored.isDark();
+    }
+
+    @Benchmark
+    public boolean dconfQuery() {
+        return dconf.isDark();
+    }
+
+    @Benchmark
+    public boolean dconfMonitored() {
+        return dconfMonitored.isDark();
+    }
+}
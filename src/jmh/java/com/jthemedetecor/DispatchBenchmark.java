@@ -0,0 +1,75 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.jthemedetecor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The cost of notifying all listeners about a theme change. The listeners run on the dispatching
+ * thread, so the result covers the whole fan-out. With {@code listenerMetrics}, the timings of every
+ * listener are recorded too (they can't be disabled again, but every parameter set runs in its own fork).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DispatchBenchmark {
+
+    private static final Executor DIRECT_EXECUTOR = Runnable::run;
+
+    @Param({"1", "10", "100", "1000", "10000"})
+    public int listenerCount;
+
+    @Param({"false", "true"})
+    public boolean listenerMetrics;
+
+    private ListenerDispatcher<Boolean> dispatcher;
+    private boolean dark;
+    private long version;
+
+    @Setup
+    public void setUp(Blackhole blackhole) {
+        if (listenerMetrics) {
+            GlobalMetrics.enableListenerMetrics();
+        }
+        dispatcher = new ListenerDispatcher<>();
+        for (int i = 0; i < listenerCount; i++) {
+            dispatcher.add(value -> blackhole.consume(value), DIRECT_EXECUTOR);
+        }
+    }
+
+    @Benchmark
+    public void dispatch() {
+        dark = !dark;
+        // versioned like the theme changes of a detector
+        dispatcher.dispatch(dark, ++version);
+    }
+}
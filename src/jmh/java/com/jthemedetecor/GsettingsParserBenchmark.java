@@ -0,0 +1,104 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import com.jthemedetecor.util.GsettingsMonitorReader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The throughput of reading a synthetic {@code gsettings monitor} transcript of several megabytes, with the
+ * {@link GsettingsMonitorReader} and with the former line-based reading. Run it with {@code -prof gc} to compare
+ * the allocation rates.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GsettingsParserBenchmark {
+
+    private static final String[] RECORDS = {
+            "gtk-theme: 'Adwaita'",
+            "gtk-theme: 'Adwaita-dark'",
+            "color-scheme: 'prefer-dark'",
+            "color-scheme: 'default'",
+            "cursor-size: 24",
+            "text-scaling-factor: 1.25",
+            "font-name: 'Cantarell 11'",
+    };
+
+    @Param({"8"})
+    public int megabytes;
+
+    private byte[] transcript;
+
+    @Setup
+    public void setUp() {
+        final StringBuilder builder = new StringBuilder();
+        final Random random = new Random(42);
+        while (builder.length() < megabytes * 1024 * 1024) {
+            builder.append(RECORDS[random.nextInt(RECORDS.length)]).append('\n');
+        }
+        transcript = builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int reader() throws IOException {
+        final GsettingsMonitorReader reader = new GsettingsMonitorReader(new ByteArrayInputStream(transcript));
+        int darkRecords = 0;
+        while (reader.next()) {
+            if (reader.keyEquals("gtk-theme") && reader.valueEquals("'Adwaita-dark'")) {
+                darkRecords++;
+            }
+        }
+        return darkRecords;
+    }
+
+    @Benchmark
+    public int lines() throws IOException {
+        final BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new ByteArrayInputStream(transcript), StandardCharsets.UTF_8));
+        int darkRecords = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            final int separator = line.indexOf(": ");
+            if (separator > 0 && line.substring(0, separator).equals("gtk-theme") &&
+                    line.substring(separator + 2).equals("'Adwaita-dark'")) {
+                darkRecords++;
+            }
+        }
+        return darkRecords;
+    }
+}
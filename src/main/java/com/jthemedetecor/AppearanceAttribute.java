@@ -0,0 +1,68 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.jthemedetecor;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.function.Function;
+
+/**
+ * An attribute of the {@link AppearanceSnapshot} that can be listened to separately,
+ * see {@link OsThemeDetector#registerListener(AppearanceAttribute, java.util.function.Consumer)}.
+ *
+ * @param <T> the type of the value of the attribute
+ */
+public final class AppearanceAttribute<T> {
+
+    public static final AppearanceAttribute<String> GTK_THEME =
+            new AppearanceAttribute<>("gtk-theme", AppearanceSnapshot::getGtkTheme);
+
+    public static final AppearanceAttribute<String> COLOR_SCHEME =
+            new AppearanceAttribute<>("color-scheme", AppearanceSnapshot::getColorScheme);
+
+    public static final AppearanceAttribute<String> ACCENT_COLOR =
+            new AppearanceAttribute<>("accent-color", AppearanceSnapshot::getAccentColor);
+
+    public static final AppearanceAttribute<Boolean> HIGH_CONTRAST =
+            new AppearanceAttribute<>("high-contrast", AppearanceSnapshot::isHighContrast);
+
+    public static final AppearanceAttribute<Double> TEXT_SCALING_FACTOR =
+            new AppearanceAttribute<>("text-scaling-factor", AppearanceSnapshot::getTextScalingFactor);
+
+    public static final AppearanceAttribute<String> CURSOR_THEME =
+            new AppearanceAttribute<>("cursor-theme", AppearanceSnapshot::getCursorTheme);
+
+    private final String name;
+    private final Function<AppearanceSnapshot, T> getter;
+
+    private AppearanceAttribute(String name, Function<AppearanceSnapshot, T> getter) {
+        this.name = name;
+        this.getter = getter;
+    }
+
+    @NotNull
+    public String getName() {
+        return name;
+    }
+
+    T get(@NotNull AppearanceSnapshot snapshot) {
+        return getter.apply(snapshot);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.jthemedetecor;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * The listeners of the individual appearance attributes. While there are listeners, the registry
+ * is subscribed to the {@link GnomeInterfaceMonitor} and notifies the listeners of the attributes
+ * whose value has changed.
+ */
+final class AppearanceListeners implements Consumer<AppearanceSnapshot> {
+
+    private final Map<AppearanceAttribute<?>, ListenerDispatcher<?>> dispatchers = new ConcurrentHashMap<>();
+    private final Supplier<GnomeInterfaceMonitor> monitorResolver;
+
+    // resolved when the first listener is added; null if the appearance can't be monitored on the system
+    private GnomeInterfaceMonitor monitor;
+    private boolean monitorResolved;
+
+    private volatile AppearanceSnapshot last;
+
+    /**
+     * @param monitorResolver resolves the monitor of the appearance; returns {@code null} if it can't be monitored
+     */
+    AppearanceListeners(@NotNull Supplier<GnomeInterfaceMonitor> monitorResolver) {
+        this.monitorResolver = monitorResolver;
+    }
+
+    synchronized <T> void add(@NotNull AppearanceAttribute<T> attribute,
+                              @NotNull Consumer<? super T> listener,
+                              @NotNull Executor executor) {
+        dispatcher(attribute).add(listener, executor);
+        if (!monitorResolved) {
+            monitor = monitorResolver.get();
+            monitorResolved = true;
+        }
+        if (monitor != null && last == null) {
+            last = monitor.subscribe(this);
+        }
+    }
+
+    synchronized void remove(@NotNull AppearanceAttribute<?> attribute, @Nullable Consumer<?> listener) {
+        final ListenerDispatcher<?> dispatcher = dispatchers.get(attribute);
+        if (dispatcher == null || !dispatcher.remove(listener)) {
+            return;
+        }
+        // the dispatcher has become empty
+        dispatchers.remove(attribute);
+        if (dispatchers.isEmpty() && monitor != null) {
+            monitor.unsubscribe(this);
+            last = null;
+        }
+    }
+
+    /**
+     * Removes every listener and unsubscribes from the monitor.
+     */
+    synchronized void clear() {
+        dispatchers.clear();
+        if (monitor != null) {
+            monitor.unsubscribe(this);
+            last = null;
+        }
+    }
+
+    boolean isEmpty() {
+        return dispatchers.isEmpty();
+    }
+
+    /**
+     * Called by the monitor on a change of the schema.
+     */
+    @Override
+    public void accept(AppearanceSnapshot next) {
+        final AppearanceSnapshot previous = last;
+        last = next;
+        for (Map.Entry<AppearanceAttribute<?>, ListenerDispatcher<?>> entry : dispatchers.entrySet()) {
+            dispatchIfChanged(entry.getKey(), entry.getValue(), previous, next);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void dispatchIfChanged(AppearanceAttribute<T> attribute, ListenerDispatcher<?> dispatcher,
+                                              @Nullable AppearanceSnapshot previous, AppearanceSnapshot next) {
+        final T value = attribute.get(next);
+        if (value != null && (previous == null || !Objects.equals(value, attribute.get(previous)))) {
+            ((ListenerDispatcher<T>) dispatcher).dispatch(value);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> ListenerDispatcher<T> dispatcher(AppearanceAttribute<T> attribute) {
+        return (ListenerDispatcher<T>) dispatchers.computeIfAbsent(attribute, key -> new ListenerDispatcher<T>());
+    }
+}
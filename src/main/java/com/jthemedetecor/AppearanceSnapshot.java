@@ -0,0 +1,157 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.jthemedetecor;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * An immutable snapshot of the appearance settings of the desktop.
+ * <p>
+ * On GNOME the snapshot holds every key of the {@code org.gnome.desktop.interface} schema;
+ * on other systems only the dark/light theme is known and the attributes have their default values.
+ */
+public final class AppearanceSnapshot {
+
+    private static final String HIGH_CONTRAST_THEME = "HighContrast";
+
+    private final boolean dark;
+    private final Map<String, String> values;
+
+    AppearanceSnapshot(boolean dark, @NotNull Map<String, String> values) {
+        this.dark = dark;
+        this.values = Collections.unmodifiableMap(new TreeMap<>(values));
+    }
+
+    /**
+     * @return {@code true} if the desktop uses a dark theme
+     */
+    public boolean isDark() {
+        return dark;
+    }
+
+    /**
+     * @return the name of the GTK theme; {@code null} if unknown
+     */
+    @Nullable
+    public String getGtkTheme() {
+        return getString("gtk-theme");
+    }
+
+    /**
+     * @return the preferred color scheme ({@code default}, {@code prefer-dark} or {@code prefer-light});
+     * {@code null} if unknown
+     */
+    @Nullable
+    public String getColorScheme() {
+        return getString("color-scheme");
+    }
+
+    /**
+     * @return the name of the accent color (e.g. {@code blue}); {@code null} if unknown
+     */
+    @Nullable
+    public String getAccentColor() {
+        return getString("accent-color");
+    }
+
+    /**
+     * @return {@code true} if a high-contrast theme is used
+     */
+    public boolean isHighContrast() {
+        final String gtkTheme = getGtkTheme();
+        return gtkTheme != null && gtkTheme.startsWith(HIGH_CONTRAST_THEME);
+    }
+
+    /**
+     * @return the factor the fonts are scaled by; {@code 1.0} if unknown
+     */
+    public double getTextScalingFactor() {
+        final String value = getValue("text-scaling-factor");
+        if (value != null) {
+            try {
+                return Double.parseDouble(value);
+            } catch (NumberFormatException ignored) {
+            }
+        }
+        return 1.0;
+    }
+
+    /**
+     * @return the name of the cursor theme; {@code null} if unknown
+     */
+    @Nullable
+    public String getCursorTheme() {
+        return getString("cursor-theme");
+    }
+
+    /**
+     * @return the value of the given attribute
+     */
+    public <T> T get(@NotNull AppearanceAttribute<T> attribute) {
+        return attribute.get(this);
+    }
+
+    /**
+     * Returns the raw value of a key, as printed by {@code gsettings} (e.g. {@code 'Adwaita'} or {@code 1.25}).
+     *
+     * @param key the name of the key in the {@code org.gnome.desktop.interface} schema
+     * @return the value; {@code null} if unknown
+     */
+    @Nullable
+    public String getValue(@NotNull String key) {
+        return values.get(key);
+    }
+
+    /**
+     * @return the raw values of all known keys
+     */
+    @NotNull
+    public Map<String, String> getValues() {
+        return values;
+    }
+
+    @Nullable
+    private String getString(String key) {
+        final String value = getValue(key);
+        if (value != null && value.length() >= 2 && value.charAt(0) == '\'' && value.charAt(value.length() - 1) == '\'') {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        AppearanceSnapshot that = (AppearanceSnapshot) o;
+        return dark == that.dark && values.equals(that.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(dark, values);
+    }
+
+    @Override
+    public String toString() {
+        return "AppearanceSnapshot{dark=" + dark + ", values=" + values + '}';
+    }
+}
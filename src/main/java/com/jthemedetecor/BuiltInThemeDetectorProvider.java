@@ -0,0 +1,186 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.jthemedetecor;
+
+import com.jthemedetecor.util.OsInfo;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The providers of the detectors shipped with the library. The detectors are only initialized by
+ * the provider that is actually applicable, so the JNA/Foundation classes aren't loaded on other platforms.
+ */
+enum BuiltInThemeDetectorProvider implements ThemeDetectorProvider {
+
+    SIMULATION("Simulation", Integer.MAX_VALUE) {
+        @Override
+        public boolean isApplicable() {
+            return System.getProperty(SimulatedThemeDetector.TIMELINE_PROPERTY) != null;
+        }
+
+        @NotNull
+        @Override
+        public OsThemeDetector create() {
+            return new SimulatedThemeDetector(System.getProperty(SimulatedThemeDetector.TIMELINE_PROPERTY, ""), true);
+        }
+
+        @Override
+        public boolean isApplicable(@NotNull SessionContext session) {
+            return isApplicable();
+        }
+    },
+
+    WINDOWS("Windows 10", 50) {
+        @Override
+        public boolean isApplicable() {
+            return OsInfo.isWindows10OrLater();
+        }
+
+        @NotNull
+        @Override
+        public OsThemeDetector create() {
+            return new WindowsThemeDetector();
+        }
+    },
+
+    MACOS("MacOS", 50) {
+        @Override
+        public boolean isApplicable() {
+            return OsInfo.isMacOsMojaveOrLater();
+        }
+
+        @NotNull
+        @Override
+        public OsThemeDetector create() {
+            return new MacOSThemeDetector();
+        }
+    },
+
+    // the portal only reports the color-scheme of GNOME, so on GNOME the detectors checking the gtk-theme too are used
+    PORTAL("XDG Desktop Portal", 40) {
+        @Override
+        public boolean isApplicable() {
+            return OsInfo.isLinux() && !OsInfo.isGnome() && PortalThemeDetector.isAvailable();
+        }
+
+        @NotNull
+        @Override
+        public OsThemeDetector create() {
+            return PortalThemeDetector.connect();
+        }
+
+        @Override
+        public boolean isApplicable(@NotNull SessionContext session) {
+            return OsInfo.isLinux() && !session.isGnome() &&
+                    PortalThemeDetector.isAvailable(session.get(SessionContext.SESSION_BUS_ADDRESS));
+        }
+
+        @NotNull
+        @Override
+        public OsThemeDetector create(@NotNull SessionContext session) {
+            return PortalThemeDetector.connect(session.get(SessionContext.SESSION_BUS_ADDRESS));
+        }
+    },
+
+    KDE("KDE Plasma", 30) {
+        @Override
+        public boolean isApplicable() {
+            return OsInfo.isKde() && KdeThemeDetector.isAvailable(SessionContext.current());
+        }
+
+        @NotNull
+        @Override
+        public OsThemeDetector create() {
+            return new KdeThemeDetector();
+        }
+
+        @Override
+        public boolean isApplicable(@NotNull SessionContext session) {
+            return OsInfo.isLinux() && session.isKde() && KdeThemeDetector.isAvailable(session);
+        }
+
+        @NotNull
+        @Override
+        public OsThemeDetector create(@NotNull SessionContext session) {
+            return new KdeThemeDetector(KdeThemeDetector.settingsFile(session));
+        }
+    },
+
+    DCONF("Gnome (dconf)", 30) {
+        @Override
+        public boolean isApplicable() {
+            return OsInfo.isGnome() && DconfThemeDetector.isAvailable(SessionContext.current());
+        }
+
+        @NotNull
+        @Override
+        public OsThemeDetector create() {
+            return new DconfThemeDetector();
+        }
+
+        @Override
+        public boolean isApplicable(@NotNull SessionContext session) {
+            return OsInfo.isLinux() && session.isGnome() && DconfThemeDetector.isAvailable(session);
+        }
+
+        @NotNull
+        @Override
+        public OsThemeDetector create(@NotNull SessionContext session) {
+            return new DconfThemeDetector(DconfThemeDetector.databaseFile(session),
+                    GnomeInterfaceMonitor.forSession(session));
+        }
+    },
+
+    GNOME("Gnome", 20) {
+        @Override
+        public boolean isApplicable() {
+            return OsInfo.isGnome();
+        }
+
+        @NotNull
+        @Override
+        public OsThemeDetector create() {
+            return new GnomeThemeDetector();
+        }
+
+        @Override
+        public boolean isApplicable(@NotNull SessionContext session) {
+            return OsInfo.isLinux() && session.isGnome();
+        }
+
+        @NotNull
+        @Override
+        public OsThemeDetector create(@NotNull SessionContext session) {
+            return new GnomeThemeDetector(GnomeInterfaceMonitor.forSession(session));
+        }
+    };
+
+    private final String desktop;
+    private final int priority;
+
+    BuiltInThemeDetectorProvider(String desktop, int priority) {
+        this.desktop = desktop;
+        this.priority = priority;
+    }
+
+    @Override
+    public int priority() {
+        return priority;
+    }
+
+    @Override
+    public String toString() {
+        return desktop;
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.jthemedetecor;
+
+import com.jthemedetecor.util.GvdbReader;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Used for detecting the dark theme on a Linux (GNOME/GTK) system by reading the dconf
+ * user database ({@code ~/.config/dconf/user}) directly, without spawning {@code gsettings} processes.
+ * <p>
+ * The user database only contains the keys the user has changed. The values of the other keys (the defaults
+ * of the schema, or the ones set by the system databases of the dconf profile) are asked from {@code gsettings}
+ * once, when they are first needed.
+ */
+class DconfThemeDetector extends OsThemeDetector {
+
+    private static final Logger logger = LoggerFactory.getLogger(DconfThemeDetector.class);
+
+    private static final String DATABASE_NAME = "user";
+    private static final String SCHEMA_PATH = "/org/gnome/desktop/interface/";
+    private static final String[] THEME_KEYS = {"gtk-theme", "color-scheme"};
+    private static final byte[][] THEME_KEY_PATHS = new byte[THEME_KEYS.length][];
+
+    static {
+        for (int i = 0; i < THEME_KEYS.length; i++) {
+            THEME_KEY_PATHS[i] = (SCHEMA_PATH + THEME_KEYS[i]).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private final Pattern darkThemeNamePattern = Pattern.compile(".*dark.*", Pattern.CASE_INSENSITIVE);
+    private final Path databaseFile;
+    private final GnomeInterfaceMonitor gsettings;
+
+    private final ParsedFileCache<GvdbReader> database;
+    // the values of the keys the user hasn't changed (not the effective ones); queried once, when they are first needed
+    private volatile Map<String, String> defaultValues;
+    private volatile FileWatchTask detectorThread;
+
+    DconfThemeDetector() {
+        this(databaseFile(SessionContext.current()));
+    }
+
+    DconfThemeDetector(@NotNull Path databaseFile) {
+        this(databaseFile, GnomeInterfaceMonitor.getInstance());
+    }
+
+    /**
+     * @param gsettings queries the values the user database doesn't contain, e.g. in the environment of another session
+     */
+    DconfThemeDetector(@NotNull Path databaseFile, @NotNull GnomeInterfaceMonitor gsettings) {
+        this.databaseFile = databaseFile;
+        this.database = new ParsedFileCache<>(databaseFile, GvdbReader::open);
+        this.gsettings = gsettings;
+    }
+
+    /**
+     * @return {@code true} if GSettings is backed by dconf and the user database exists
+     */
+    static boolean isAvailable(@NotNull SessionContext session) {
+        final String backend = session.get(SessionContext.GSETTINGS_BACKEND);
+        return (backend == null || backend.equals("dconf")) && Files.isRegularFile(databaseFile(session));
+    }
+
+    @NotNull
+    static Path databaseFile(@NotNull SessionContext session) {
+        return session.configHome().resolve("dconf").resolve(DATABASE_NAME);
+    }
+
+    @Override
+    protected boolean queryDark() {
+        try {
+            return probeDark();
+        } catch (IOException e) {
+            logger.error("Couldn't read the dconf database", e);
+        }
+        return false;
+    }
+
+    @Override
+    boolean probeDark() throws IOException {
+        return isDark(database.get(!isMonitoring()));
+    }
+
+    @Override
+    protected boolean isMonitoring() {
+        return detectorThread != null;
+    }
+
+    private boolean isDark(GvdbReader reader) throws IOException {
+        for (int i = 0; i < THEME_KEYS.length; i++) {
+            String value = reader.getString(THEME_KEY_PATHS[i]);
+            if (value == null) {
+                value = defaultValues().get(THEME_KEYS[i]);
+            }
+            if (value != null && darkThemeNamePattern.matcher(value).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the values of the schema that apply while the user hasn't changed them
+     * @throws IOException if they can't be queried; they are queried again the next time
+     */
+    @NotNull
+    private Map<String, String> defaultValues() throws IOException {
+        Map<String, String> current = defaultValues;
+        if (current == null) {
+            current = gsettings.queryDefaults();
+            defaultValues = current;
+        }
+        return current;
+    }
+
+    @Override
+    protected void startMonitoring() {
+        final FileWatchTask currentDetectorThread = detectorThread;
+        if (currentDetectorThread == null || currentDetectorThread.isInterrupted()) {
+            refreshState();
+            // the database is replaced rather than modified when it's written
+            final FileWatchTask newDetectorThread =
+                    new FileWatchTask("Dconf Theme Detector Thread", databaseFile, this::onDatabaseChanged);
+            this.detectorThread = newDetectorThread;
+            startMonitorTask(newDetectorThread);
+        }
+    }
+
+    @Override
+    protected void stopMonitoring() {
+        final FileWatchTask currentDetectorThread = detectorThread;
+        if (currentDetectorThread != null) {
+            currentDetectorThread.interrupt();
+            this.detectorThread = null;
+        }
+    }
+
+    private void onDatabaseChanged() {
+        final boolean currentDetection;
+        try {
+            currentDetection = isDark(database.get(true));
+        } catch (IOException e) {
+            logger.error("Couldn't read the dconf database", e);
+            return;
+        }
+        onThemeDetected(currentDetection);
+    }
+}
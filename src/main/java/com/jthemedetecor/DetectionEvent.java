@@ -0,0 +1,39 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event of an {@link OsThemeDetector#isDark()} call that queried the os.
+ */
+@Name("com.jthemedetecor.Detection")
+@Label("Theme Detection")
+@Description("An isDark() call querying the os")
+@Category("jSystemThemeDetector")
+@StackTrace(false)
+final class DetectionEvent extends jdk.jfr.Event {
+
+    @Label("Detector")
+    String detector;
+
+    @Label("Dark")
+    boolean dark;
+}
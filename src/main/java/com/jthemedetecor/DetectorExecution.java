@@ -0,0 +1,253 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.jthemedetecor;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import oshi.annotation.concurrent.ThreadSafe;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controls the threads the detectors run on: the loops monitoring the os, the listener notifications,
+ * the asynchronous queries and the timers of the coalescing.
+ * <p>
+ * By default the library creates its own daemon threads. Alternatively the threads can come from
+ * a caller-supplied {@link ThreadFactory}, be virtual threads (Java 21+), or the tasks can run on a
+ * caller-supplied {@link ExecutorService}. The execution should be configured before the detector
+ * is used; a change only applies to the tasks started afterwards.
+ */
+@ThreadSafe
+public final class DetectorExecution {
+
+    private static final Logger logger = LoggerFactory.getLogger(DetectorExecution.class);
+
+    private static final long IDLE_TIMEOUT_SECONDS = 60;
+    // the time a monitoring loop may wait in the queue of a caller-supplied executor
+    static final long START_TIMEOUT_MILLIS = 1000;
+
+    private static final Object lock = new Object();
+
+    // at most one of them is set; neither of them in the default mode
+    private static ThreadFactory threadFactory;
+    private static ExecutorService executor;
+    private static boolean nameThreads = true;
+
+    // created when they are first needed in the current mode
+    private static ExecutorService sharedExecutor;
+    private static ScheduledExecutorService scheduler;
+    // checks that the loops submitted to a caller-supplied executor start; never runs on that executor
+    private static ScheduledExecutorService startWatchdog;
+
+    private DetectorExecution() {
+    }
+
+    /**
+     * Creates all threads of the library through the given factory.
+     */
+    public static void useThreadFactory(@NotNull ThreadFactory threadFactory) {
+        configure(Objects.requireNonNull(threadFactory), null, false);
+    }
+
+    /**
+     * Runs all tasks of the library on the given executor, so the library creates no threads of its own.
+     * If it is a {@link ScheduledExecutorService}, it runs the timers too; otherwise a single timer thread
+     * is created when it is needed, which exits when it's idle.
+     * <p>
+     * Every monitoring loop occupies a thread of the executor while the detector is monitoring the os.
+     * A loop that the executor rejects, or that doesn't start within {@value #START_TIMEOUT_MILLIS} ms
+     * (e.g. in a bounded pool whose threads are taken by other loops), runs on a dedicated daemon thread
+     * instead, so a detector reporting that it's monitoring really is; the check runs on a timer thread
+     * of the library, which exits when it's idle.
+     */
+    public static void useExecutor(@NotNull ExecutorService executor) {
+        configure(null, Objects.requireNonNull(executor), false);
+    }
+
+    /**
+     * Runs all tasks of the library on virtual threads, if the running Java version supports them.
+     *
+     * @return {@code true} if virtual threads are used; {@code false} if they aren't supported,
+     * in which case the execution is unchanged
+     */
+    public static boolean useVirtualThreads() {
+        final ThreadFactory virtualThreadFactory = virtualThreadFactory();
+        if (virtualThreadFactory == null) {
+            return false;
+        }
+        configure(virtualThreadFactory, null, true);
+        return true;
+    }
+
+    /**
+     * Restores the default execution on dedicated daemon threads.
+     */
+    public static void useDefault() {
+        configure(null, null, true);
+    }
+
+    private static void configure(ThreadFactory threadFactory, ExecutorService executor, boolean nameThreads) {
+        synchronized (lock) {
+            DetectorExecution.threadFactory = threadFactory;
+            DetectorExecution.executor = executor;
+            DetectorExecution.nameThreads = nameThreads;
+            sharedExecutor = null;
+            scheduler = null;
+            startWatchdog = null;
+        }
+    }
+
+    /**
+     * Starts a monitoring loop.
+     */
+    static void start(@NotNull MonitorTask task) {
+        GlobalMetrics.monitorStarted();
+        final ExecutorService currentExecutor;
+        final ThreadFactory currentThreadFactory;
+        final boolean currentNameThreads;
+        synchronized (lock) {
+            currentExecutor = executor;
+            currentThreadFactory = threadFactory;
+            currentNameThreads = nameThreads;
+        }
+        if (currentExecutor == null) {
+            startThread(task, currentThreadFactory, currentNameThreads);
+            return;
+        }
+        try {
+            currentExecutor.execute(task::execute);
+        } catch (RejectedExecutionException e) {
+            logger.warn("The executor has rejected {}, it runs on a dedicated thread", task.getName());
+            startThread(task, null, true);
+            return;
+        }
+        startWatchdog().schedule(() -> {
+            if (!task.hasStarted() && !task.isInterrupted()) {
+                logger.warn("{} hasn't started on the executor in {} ms, it runs on a dedicated thread",
+                        task.getName(), START_TIMEOUT_MILLIS);
+                // the queued task returns right away if it gets a thread after all
+                startThread(task, null, true);
+            }
+        }, START_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private static void startThread(MonitorTask task, ThreadFactory currentThreadFactory, boolean currentNameThreads) {
+        final Thread thread;
+        if (currentThreadFactory == null) {
+            thread = new Thread(task::execute);
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+        } else {
+            thread = currentThreadFactory.newThread(task::execute);
+        }
+        if (currentNameThreads) {
+            thread.setName(task.getName());
+        }
+        thread.start();
+    }
+
+    /**
+     * @return the executor of the listener notifications and the asynchronous queries
+     */
+    @NotNull
+    static Executor executor() {
+        synchronized (lock) {
+            if (executor != null) {
+                return executor;
+            }
+            if (sharedExecutor == null) {
+                sharedExecutor = Executors.newCachedThreadPool(threadFactory("Theme Detector Worker Thread"));
+            }
+            return sharedExecutor;
+        }
+    }
+
+    private static ScheduledExecutorService startWatchdog() {
+        synchronized (lock) {
+            if (startWatchdog == null) {
+                startWatchdog = newScheduler(threadFactory("Theme Detector Watchdog Thread"));
+            }
+            return startWatchdog;
+        }
+    }
+
+    /**
+     * @return the scheduler of the timers
+     */
+    @NotNull
+    static ScheduledExecutorService scheduler() {
+        synchronized (lock) {
+            if (executor instanceof ScheduledExecutorService) {
+                return (ScheduledExecutorService) executor;
+            }
+            if (scheduler == null) {
+                scheduler = newScheduler(threadFactory("Theme Detector Scheduler Thread"));
+            }
+            return scheduler;
+        }
+    }
+
+    private static ScheduledExecutorService newScheduler(ThreadFactory threadFactory) {
+        final ScheduledThreadPoolExecutor newScheduler = new ScheduledThreadPoolExecutor(1, threadFactory);
+        newScheduler.setKeepAliveTime(IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        newScheduler.allowCoreThreadTimeOut(true);
+        newScheduler.setRemoveOnCancelPolicy(true);
+        return newScheduler;
+    }
+
+    private static ThreadFactory threadFactory(String name) {
+        final ThreadFactory currentThreadFactory = threadFactory;
+        final boolean currentNameThreads = nameThreads;
+        return runnable -> {
+            final Thread thread;
+            if (currentThreadFactory == null) {
+                thread = new Thread(runnable);
+                thread.setDaemon(true);
+            } else {
+                thread = currentThreadFactory.newThread(runnable);
+            }
+            if (currentNameThreads) {
+                thread.setName(name);
+            }
+            return thread;
+        };
+    }
+
+    /**
+     * @return the factory of the virtual threads; {@code null} if they aren't supported
+     */
+    private static ThreadFactory virtualThreadFactory() {
+        try {
+            // Thread.ofVirtual().factory(), only available on Java 21+
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+        } catch (NoSuchMethodException | ClassNotFoundException e) {
+            logger.debug("Virtual threads are not available on Java {}", System.getProperty("java.version"));
+        } catch (IllegalAccessException | InvocationTargetException | RuntimeException e) {
+            logger.debug("Couldn't create virtual threads", e);
+        }
+        return null;
+    }
+}
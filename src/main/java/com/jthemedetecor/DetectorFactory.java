@@ -0,0 +1,262 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import com.jthemedetecor.util.OsInfo;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Creates the detectors: probes the providers, or starts from the startup cache and revalidates it
+ * in the background, or races the providers, as configured through {@link OsThemeDetector}.
+ */
+final class DetectorFactory {
+
+    private static final Logger logger = LoggerFactory.getLogger(DetectorFactory.class);
+
+    private static final String RACE_DEADLINE_PROPERTY = "jthemedetector.raceDeadlineMillis";
+
+    private static volatile boolean startupCacheEnabled = Boolean.getBoolean(StartupCache.ENABLED_PROPERTY);
+    private static volatile boolean sharedMonitoringEnabled = Boolean.getBoolean(SharedThemeDetector.ENABLED_PROPERTY);
+    // negative if the providers are probed one after the other
+    private static volatile long raceDeadlineNanos =
+            TimeUnit.MILLISECONDS.toNanos(Long.getLong(RACE_DEADLINE_PROPERTY, -1));
+
+    private DetectorFactory() {
+    }
+
+    static void enableStartupCache() {
+        startupCacheEnabled = true;
+    }
+
+    static void enableSharedMonitoring() {
+        sharedMonitoringEnabled = true;
+    }
+
+    static void enableBackendRacing(long deadlineNanos) {
+        raceDeadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * Creates the detector of {@link OsThemeDetector#getDetector()}.
+     */
+    @NotNull
+    static OsThemeDetector create() {
+        final OsThemeDetector detector = createLocal();
+        if (sharedMonitoringEnabled && OsInfo.isLinux() && !(detector instanceof EmptyDetector)
+                && !(detector instanceof SimulatedThemeDetector)) {
+            return SharedThemeDetector.share(detector);
+        }
+        return detector;
+    }
+
+    /**
+     * Creates the detector of a session other than the one of the running process.
+     */
+    @NotNull
+    static OsThemeDetector create(@NotNull SessionContext session) {
+        OsThemeDetector detector = null;
+        for (ThemeDetectorProvider provider : providers()) {
+            try {
+                if (provider.isApplicable(session)) {
+                    detector = provider.create(session);
+                    detector.chooseProvider(provider);
+                    break;
+                }
+            } catch (RuntimeException | LinkageError e) {
+                logger.error("Couldn't create the theme detector of {} for {}", provider, session, e);
+            }
+        }
+        if (detector == null) {
+            logger.debug("Theme detection is not supported in {}", session);
+            detector = new EmptyDetector();
+        }
+        logger.debug("Created {} for {}", detector.getClass().getName(), session);
+        detector.bindSession(session);
+        return detector;
+    }
+
+    private static OsThemeDetector createLocal() {
+        final StartupCache cache = startupCacheEnabled ? StartupCache.getDefault() : null;
+        if (cache != null) {
+            final OsThemeDetector detector = createCached(cache);
+            if (detector != null) {
+                return detector;
+            }
+        }
+        final long deadline = raceDeadlineNanos;
+        if (deadline >= 0) {
+            logger.debug("Racing the theme detectors for {} ms", TimeUnit.NANOSECONDS.toMillis(deadline));
+            final OsThemeDetector detector = new RacingThemeDetector(providers(), deadline, TimeUnit.NANOSECONDS);
+            detector.useStartupCache(cache);
+            return detector;
+        }
+        for (ThemeDetectorProvider provider : providers()) {
+            final OsThemeDetector detector;
+            try {
+                if (!provider.isApplicable()) {
+                    continue;
+                }
+                logger.debug("Supported Desktop detected: {}", provider);
+                detector = provider.create();
+            } catch (RuntimeException | LinkageError e) {
+                logger.error("Couldn't create the theme detector of {}", provider, e);
+                continue;
+            }
+            logger.debug("Created {}", detector.getClass().getName());
+            detector.chooseProvider(provider);
+            detector.useStartupCache(cache);
+            return detector;
+        }
+        if (cache != null) {
+            cache.clear();
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug("Theme detection is not supported on the system: {} {}", OsInfo.getFamily(), OsInfo.getVersion());
+            logger.debug("Creating empty detector...");
+        }
+        return new EmptyDetector();
+    }
+
+    /**
+     * Creates the detector remembered by the startup cache and publishes the remembered theme as its state,
+     * then revalidates both of them in the background.
+     *
+     * @return {@code null} if the cache has no entry for the environment
+     */
+    @Nullable
+    private static OsThemeDetector createCached(@NotNull StartupCache cache) {
+        final StartupCache.Entry entry = cache.load();
+        if (entry == null) {
+            return null;
+        }
+        final ThemeDetectorProvider provider = StartupCache.findProvider(entry.getProviderId());
+        if (provider == null) {
+            return null;
+        }
+        final OsThemeDetector detector;
+        try {
+            detector = provider.create();
+        } catch (RuntimeException | LinkageError e) {
+            logger.error("Couldn't create the cached theme detector of {}", provider, e);
+            return null;
+        }
+        logger.debug("Created {} from the startup cache", detector.getClass().getName());
+        detector.publishState(entry.isDark());
+        detector.chooseProvider(provider);
+        detector.setStartupStateUnverified(true);
+        detector.useStartupCache(cache);
+        DetectorExecution.executor().execute(() -> revalidate(detector, cache));
+        return detector;
+    }
+
+    /**
+     * Probes the platform and queries the theme like an uncached start would. A changed theme is published
+     * (and cached) as usual; a changed platform only takes effect at the next start, as the detector
+     * may already be in use.
+     */
+    private static void revalidate(@NotNull OsThemeDetector detector, @NotNull StartupCache cache) {
+        try {
+            final ThemeDetectorProvider applicable = applicableProvider();
+            final boolean dark = detector.refreshState().isDark();
+            if (applicable == null) {
+                cache.clear();
+                detector.useStartupCache(null);
+            } else if (!StartupCache.isSameProvider(applicable, detector.provider())) {
+                logger.info("The theme detection has changed to {}, it is used from the next start", applicable);
+                cache.store(applicable, dark);
+            }
+        } catch (RuntimeException e) {
+            logger.error("Couldn't revalidate the startup cache", e);
+        } finally {
+            detector.setStartupStateUnverified(false);
+        }
+    }
+
+    /**
+     * @return {@code true} if a provider is applicable; the platform is only probed once
+     */
+    static boolean isSupported() {
+        return SupportProbe.SUPPORTED;
+    }
+
+    /**
+     * @return the applicable provider with the highest priority; {@code null} if there is none
+     */
+    @Nullable
+    private static ThemeDetectorProvider applicableProvider() {
+        for (ThemeDetectorProvider provider : providers()) {
+            try {
+                if (provider.isApplicable()) {
+                    return provider;
+                }
+            } catch (RuntimeException | LinkageError e) {
+                logger.error("Couldn't check the theme detector provider {}", provider, e);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the built-in and the discovered providers in descending order of their priorities
+     */
+    @NotNull
+    private static List<ThemeDetectorProvider> providers() {
+        final List<ThemeDetectorProvider> providers = new ArrayList<>(Arrays.asList(BuiltInThemeDetectorProvider.values()));
+        final Iterator<ThemeDetectorProvider> discovered = ServiceLoader.load(ThemeDetectorProvider.class).iterator();
+        while (true) {
+            try {
+                if (!discovered.hasNext()) {
+                    break;
+                }
+                providers.add(discovered.next());
+            } catch (ServiceConfigurationError e) {
+                logger.error("Couldn't load a theme detector provider", e);
+            }
+        }
+        // the sort is stable, so the built-in providers precede the discovered ones of the same priority
+        providers.sort(Comparator.comparingInt(ThemeDetectorProvider::priority).reversed());
+        return providers;
+    }
+
+    /**
+     * Holds the result of the platform probing, computed when it is first needed.
+     */
+    private static final class SupportProbe {
+        private static final boolean SUPPORTED = applicableProvider() != null;
+    }
+
+    /**
+     * The detector of an unsupported platform, which always reports a light theme.
+     */
+    static final class EmptyDetector extends OsThemeDetector {
+        @Override
+        protected boolean queryDark() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+
+/**
+ * Exposes the metrics of the detector of {@link OsThemeDetector#getDetector()} through JMX. The detector
+ * is looked up on every attribute read, so the MBean follows the new detector once the old one is closed;
+ * every read takes a fresh snapshot.
+ * <p>
+ * A read only serves what the detector has recorded: it never queries the os, nor creates the detector.
+ * Until the detector is created, the attributes are the ones of a detector that hasn't done anything.
+ */
+final class DetectorMBean implements OsThemeDetectorMXBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(DetectorMBean.class);
+
+    private static final OsThemeDetector NO_DETECTOR = new DetectorFactory.EmptyDetector();
+
+    private DetectorMBean() {
+    }
+
+    /**
+     * Registers the MBean in the platform MBean server, unless it's registered already.
+     *
+     * @return {@code true} if the MBean is registered
+     */
+    static synchronized boolean register() {
+        try {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName name = new ObjectName(OsThemeDetector.MBEAN_NAME);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(new StandardMBean(new DetectorMBean(), OsThemeDetectorMXBean.class, true), name);
+            }
+            return true;
+        } catch (JMException | RuntimeException e) {
+            logger.error("Couldn't register the MBean of the theme detector", e);
+            return false;
+        }
+    }
+
+    @NotNull
+    private static OsThemeDetector detector() {
+        final OsThemeDetector detector = OsThemeDetector.existingDetector();
+        return detector != null ? detector : NO_DETECTOR;
+    }
+
+    @Override
+    public String getDetectorType() {
+        final OsThemeDetector detector = OsThemeDetector.existingDetector();
+        return detector != null ? detector.getClass().getName() : null;
+    }
+
+    @Override
+    public boolean isDark() {
+        final ThemeState state = detector().currentState();
+        return state != null && state.isDark();
+    }
+
+    @Override
+    public long getStateVersion() {
+        return detector().stateVersion();
+    }
+
+    @Override
+    public MonitorHealth getMonitorHealth() {
+        return detector().getMonitorHealth();
+    }
+
+    @Override
+    public long getSpawnedProcesses() {
+        return GlobalMetrics.spawnedProcesses();
+    }
+
+    @Override
+    public long getMonitorStarts() {
+        return GlobalMetrics.monitorStarts();
+    }
+
+    @Override
+    public long getMonitorRestarts() {
+        return GlobalMetrics.monitorRestarts();
+    }
+
+    @Override
+    public long getCachedReads() {
+        return detector().metrics().cachedReads();
+    }
+
+    @Override
+    public LatencyStatistics getQueryLatency() {
+        return detector().metrics().queryLatency();
+    }
+
+    @Override
+    public long getReceivedEvents() {
+        return detector().metrics().receivedEvents();
+    }
+
+    @Override
+    public long getSuppressedEvents() {
+        return detector().metrics().suppressedEvents();
+    }
+
+    @Override
+    public DispatchStatistics getDispatchStatistics() {
+        return detector().getDispatchStatistics();
+    }
+
+    @Override
+    public List<ListenerStatistics> getListenerStatistics() {
+        return detector().getMetrics().getListenerStatistics();
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * A snapshot of the costs of an {@link OsThemeDetector}: the processes it spawned, the latency of
+ * the os queries and the time spent in the listeners.
+ *
+ * @see OsThemeDetector#getMetrics()
+ * @see OsThemeDetector#registerMBean()
+ */
+public final class DetectorMetrics {
+
+    private final long spawnedProcesses;
+    private final long monitorStarts;
+    private final long monitorRestarts;
+    private final long cachedReads;
+    private final LatencyStatistics queryLatency;
+    private final DispatchStatistics dispatchStatistics;
+    private final List<ListenerStatistics> listenerStatistics;
+
+    DetectorMetrics(long spawnedProcesses, long monitorStarts, long monitorRestarts, long cachedReads,
+                    @NotNull LatencyStatistics queryLatency,
+                    @NotNull DispatchStatistics dispatchStatistics,
+                    @NotNull List<ListenerStatistics> listenerStatistics) {
+        this.spawnedProcesses = spawnedProcesses;
+        this.monitorStarts = monitorStarts;
+        this.monitorRestarts = monitorRestarts;
+        this.cachedReads = cachedReads;
+        this.queryLatency = queryLatency;
+        this.dispatchStatistics = dispatchStatistics;
+        this.listenerStatistics = List.copyOf(listenerStatistics);
+    }
+
+    /**
+     * @return the number of child processes (e.g. {@code gsettings}) spawned by the library
+     */
+    public long getSpawnedProcesses() {
+        return spawnedProcesses;
+    }
+
+    /**
+     * @return the number of monitoring loops started by the library
+     */
+    public long getMonitorStarts() {
+        return monitorStarts;
+    }
+
+    /**
+     * @return the number of monitoring loops started to replace one that had ended on its own
+     */
+    public long getMonitorRestarts() {
+        return monitorRestarts;
+    }
+
+    /**
+     * @return the number of {@link OsThemeDetector#isDark()} calls answered from the monitored state
+     */
+    public long getCachedReads() {
+        return cachedReads;
+    }
+
+    /**
+     * @return the latency of the {@link OsThemeDetector#isDark()} calls that queried the os
+     */
+    @NotNull
+    public LatencyStatistics getQueryLatency() {
+        return queryLatency;
+    }
+
+    /**
+     * @return the counters of the change events and the listener notifications
+     */
+    @NotNull
+    public DispatchStatistics getDispatchStatistics() {
+        return dispatchStatistics;
+    }
+
+    /**
+     * @return the notification durations of the theme listeners, in registration order; their histograms
+     * are empty unless {@link OsThemeDetector#enableListenerMetrics()} has been called
+     */
+    @NotNull
+    public List<ListenerStatistics> getListenerStatistics() {
+        return listenerStatistics;
+    }
+
+    @Override
+    public String toString() {
+        return "DetectorMetrics{spawnedProcesses=" + spawnedProcesses + ", monitorStarts=" + monitorStarts +
+                ", monitorRestarts=" + monitorRestarts + ", cachedReads=" + cachedReads +
+                ", queryLatency=" + queryLatency + ", dispatchStatistics=" + dispatchStatistics +
+                ", listenerStatistics=" + listenerStatistics + '}';
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * The versioned theme state of a detector, and the coalescing of the raw change events of the os:
+ * the events arriving within the coalescing window are merged into one settled theme.
+ * <p>
+ * The publication is a CAS on the current state, so it never blocks; whatever has to follow a change
+ * (e.g. updating the startup cache) must not block either.
+ */
+final class DetectorState {
+
+    /**
+     * Receives the settled theme of a burst of raw events.
+     */
+    interface Settler {
+        void settle(boolean dark, int events);
+    }
+
+    static final long DEFAULT_COALESCING_WINDOW_MILLIS = 50;
+
+    private final AtomicReference<ThemeState> state = new AtomicReference<>();
+    private final Consumer<ThemeState> changeListener;
+    private final Settler settler;
+
+    // the raw events arriving within the coalescing window
+    private final Object burstLock = new Object();
+    private boolean burstDark;
+    private int burstEvents;
+
+    private volatile long coalescingWindowNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_COALESCING_WINDOW_MILLIS);
+
+    /**
+     * @param changeListener notified of every new state, on the publishing thread
+     * @param settler        receives the settled themes of {@link #offer(boolean)}
+     */
+    DetectorState(@NotNull Consumer<ThemeState> changeListener, @NotNull Settler settler) {
+        this.changeListener = changeListener;
+        this.settler = settler;
+    }
+
+    /**
+     * @return the last observed state; {@code null} if the theme hasn't been observed yet
+     */
+    @Nullable
+    ThemeState current() {
+        return state.get();
+    }
+
+    /**
+     * @return the version of the current state; {@code 0} if the theme hasn't been observed yet
+     */
+    long version() {
+        final ThemeState current = state.get();
+        return current == null ? 0 : current.getVersion();
+    }
+
+    /**
+     * Publishes the given theme as the current state.
+     * A new version is only created if the theme differs from the current state.
+     *
+     * @return the state that is current after the publication
+     */
+    @NotNull
+    ThemeState publish(boolean dark) {
+        while (true) {
+            final ThemeState current = state.get();
+            if (current != null && current.isDark() == dark) {
+                return current;
+            }
+            final ThemeState next = new ThemeState(dark, current == null ? 1 : current.getVersion() + 1);
+            if (state.compareAndSet(current, next)) {
+                changeListener.accept(next);
+                return next;
+            }
+        }
+    }
+
+    void setCoalescingWindow(long windowNanos) {
+        this.coalescingWindowNanos = windowNanos;
+    }
+
+    /**
+     * Hands a raw event over to the settler: right away if the coalescing is disabled, otherwise at the end
+     * of the window started by the first event of the burst, together with the events arriving in the meantime.
+     */
+    void offer(boolean dark) {
+        final long window = coalescingWindowNanos;
+        if (window <= 0) {
+            settler.settle(dark, 1);
+            return;
+        }
+        synchronized (burstLock) {
+            burstDark = dark;
+            burstEvents++;
+            if (burstEvents > 1) {
+                return;
+            }
+        }
+        DetectorExecution.scheduler().schedule(this::settleBurst, window, TimeUnit.NANOSECONDS);
+    }
+
+    private void settleBurst() {
+        final boolean dark;
+        final int events;
+        synchronized (burstLock) {
+            dark = burstDark;
+            events = burstEvents;
+            burstEvents = 0;
+        }
+        settler.settle(dark, events);
+    }
+}
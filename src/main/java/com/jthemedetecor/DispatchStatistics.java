@@ -0,0 +1,87 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.jthemedetecor;
+
+/**
+ * A snapshot of the counters of the change events and the listener notifications of an {@link OsThemeDetector}.
+ */
+public final class DispatchStatistics {
+
+    private final long receivedEvents;
+    private final long suppressedEvents;
+    private final long delivered;
+    private final long dropped;
+    private final long late;
+    private final long failed;
+
+    DispatchStatistics(long receivedEvents, long suppressedEvents, long delivered, long dropped, long late, long failed) {
+        this.receivedEvents = receivedEvents;
+        this.suppressedEvents = suppressedEvents;
+        this.delivered = delivered;
+        this.dropped = dropped;
+        this.late = late;
+        this.failed = failed;
+    }
+
+    /**
+     * @return the number of raw change events received from the os
+     */
+    public long getReceivedEvents() {
+        return receivedEvents;
+    }
+
+    /**
+     * @return the number of raw change events that didn't lead to a notification of their own,
+     * because they were merged into a burst or didn't change the theme
+     */
+    public long getSuppressedEvents() {
+        return suppressedEvents;
+    }
+
+    /**
+     * @return the number of values passed to the listeners
+     */
+    public long getDelivered() {
+        return delivered;
+    }
+
+    /**
+     * @return the number of values that have been replaced by a newer one before their listener could receive them
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return the number of deliveries that took longer than the listener timeout
+     */
+    public long getLate() {
+        return late;
+    }
+
+    /**
+     * @return the number of deliveries that threw an exception or couldn't be scheduled
+     */
+    public long getFailed() {
+        return failed;
+    }
+
+    @Override
+    public String toString() {
+        return "DispatchStatistics{receivedEvents=" + receivedEvents + ", suppressedEvents=" + suppressedEvents +
+                ", delivered=" + delivered + ", dropped=" + dropped +
+                ", late=" + late + ", failed=" + failed + '}';
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.jthemedetecor;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The loop watching a file through the file-change notifications of the os. It calls back whenever the file
+ * may have changed (it has been modified or replaced, or events have been lost), and once right after the watch
+ * has been registered, as the file could have changed before. The loop fails if the directory of the file
+ * can't be watched any more.
+ */
+class FileWatchTask extends MonitorTask {
+
+    private static final Logger logger = LoggerFactory.getLogger(FileWatchTask.class);
+
+    private final Path file;
+    private final Runnable changeCallback;
+
+    /**
+     * @param changeCallback called on the thread of the loop
+     */
+    FileWatchTask(@NotNull String name, @NotNull Path file, @NotNull Runnable changeCallback) {
+        super(name);
+        this.file = file;
+        this.changeCallback = changeCallback;
+    }
+
+    /**
+     * For the loops that handle the changes in {@link #fileChanged()}.
+     */
+    FileWatchTask(@NotNull String name, @NotNull Path file) {
+        this(name, file, () -> {
+        });
+    }
+
+    @Override
+    public final void run() {
+        final Path directory = file.getParent();
+        try {
+            try {
+                watchStarting();
+                try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+                    directory.register(watchService,
+                            StandardWatchEventKinds.ENTRY_CREATE,
+                            StandardWatchEventKinds.ENTRY_MODIFY,
+                            StandardWatchEventKinds.OVERFLOW);
+                    fileChanged();
+                    watch(watchService, directory);
+                }
+            } finally {
+                watchEnded();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            logger.debug("{} has been interrupted!", getName());
+        } catch (IOException e) {
+            if (!this.isInterrupted()) {
+                logger.error("Couldn't watch {}", file, e);
+                failed(e);
+            }
+        }
+    }
+
+    private void watch(WatchService watchService, Path directory) throws IOException, InterruptedException {
+        while (!this.isInterrupted()) {
+            final long timeoutMillis = beforeWait();
+            final WatchKey key = timeoutMillis < 0 ?
+                    watchService.take() : watchService.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+            final String failure = checkFile();
+            if (failure != null) {
+                logger.error("Stopped watching {}: {}", file, failure);
+                failed(failure);
+                return;
+            }
+            if (key == null) {
+                continue;
+            }
+            boolean changed = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                changed |= event.kind() == StandardWatchEventKinds.OVERFLOW || file.getFileName().equals(event.context());
+            }
+            if (changed) {
+                fileChanged();
+            }
+            if (!key.reset()) {
+                logger.error("The directory is no longer accessible: {}", directory);
+                failed("the directory " + directory + " is no longer accessible");
+                return;
+            }
+        }
+    }
+
+    /**
+     * Called before the directory is watched.
+     */
+    void watchStarting() throws IOException {
+    }
+
+    /**
+     * Called whenever the file may have changed; calls the change callback by default.
+     */
+    void fileChanged() {
+        changeCallback.run();
+    }
+
+    /**
+     * Called before every wait for the next notification.
+     *
+     * @return the longest time to wait in milliseconds; negative to wait until the next notification
+     */
+    long beforeWait() throws IOException {
+        return -1;
+    }
+
+    /**
+     * Called after every wait for the next notification, e.g. to detect the changes the os doesn't notify.
+     *
+     * @return the description of the failure that ends the loop; {@code null} to keep watching
+     */
+    @Nullable
+    String checkFile() {
+        return null;
+    }
+
+    /**
+     * Called when the loop ends, however it ends, even if {@link #watchStarting()} has failed.
+     */
+    void watchEnded() throws IOException {
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters shared by every detector: the child processes and the monitoring loops.
+ */
+final class GlobalMetrics {
+
+    static final String LISTENER_METRICS_PROPERTY = "jthemedetector.listenerMetrics";
+
+    // the timings of every listener notification cost two histogram updates and a clock read, so they are opt-in
+    private static volatile boolean listenerMetricsEnabled = Boolean.getBoolean(LISTENER_METRICS_PROPERTY);
+
+    private static final LongAdder spawnedProcesses = new LongAdder();
+    private static final LongAdder monitorStarts = new LongAdder();
+    private static final LongAdder monitorRestarts = new LongAdder();
+
+    private GlobalMetrics() {
+    }
+
+    static void processSpawned() {
+        spawnedProcesses.increment();
+    }
+
+    static void monitorStarted() {
+        monitorStarts.increment();
+    }
+
+    /**
+     * Called when a monitoring loop is started to replace one that has ended on its own.
+     */
+    static void monitorRestarted() {
+        monitorRestarts.increment();
+    }
+
+    static void enableListenerMetrics() {
+        listenerMetricsEnabled = true;
+    }
+
+    static boolean listenerMetricsEnabled() {
+        return listenerMetricsEnabled;
+    }
+
+    static long spawnedProcesses() {
+        return spawnedProcesses.sum();
+    }
+
+    static long monitorStarts() {
+        return monitorStarts.sum();
+    }
+
+    static long monitorRestarts() {
+        return monitorRestarts.sum();
+    }
+}
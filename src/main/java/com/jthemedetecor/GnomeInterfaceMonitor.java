@@ -0,0 +1,524 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.jthemedetecor;
+
+import com.jthemedetecor.util.GsettingsMonitorReader;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Monitors the {@code org.gnome.desktop.interface} schema with a single {@code gsettings monitor} process
+ * and turns its keys into {@link AppearanceSnapshot}s. The process is shared by every subscriber
+ * and runs only while there are subscribers.
+ * <p>
+ * The process is supervised: if it exits (e.g. the session bus or dconf went away), it is restarted
+ * with an exponential backoff, and the schema is re-read after every restart, so the changes missed
+ * meanwhile are published too.
+ */
+final class GnomeInterfaceMonitor {
+
+    private static final Logger logger = LoggerFactory.getLogger(GnomeInterfaceMonitor.class);
+
+    private static final String SCHEMA = "org.gnome.desktop.interface";
+    private static final String MONITORING_CMD = "gsettings monitor " + SCHEMA;
+    private static final String LIST_CMD = "gsettings list-recursively " + SCHEMA;
+    // without a config directory dconf finds no user database, so only the defaults are listed
+    private static final String LIST_DEFAULTS_CMD = "env XDG_CONFIG_HOME=/nonexistent " + LIST_CMD;
+
+    private static final long EXIT_TIMEOUT_MILLIS = 1000;
+
+    private final Pattern darkThemeNamePattern = Pattern.compile(".*dark.*", Pattern.CASE_INSENSITIVE);
+    private final List<Consumer<AppearanceSnapshot>> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicReference<AppearanceSnapshot> snapshot = new AtomicReference<>();
+
+    private final CommandRunner commandRunner;
+
+    private volatile MonitorThread monitorThread;
+    // the thread stopped by the last unsubscription, which may still be terminating its process
+    private volatile MonitorThread stoppedThread;
+
+    // written by the current monitor thread, or under the lock of the monitor
+    private volatile MonitorHealth.State healthState = MonitorHealth.State.STOPPED;
+    private final AtomicLong restarts = new AtomicLong();
+    private volatile String lastFailure;
+    private volatile long lastFailureTimeMillis;
+
+    GnomeInterfaceMonitor(@NotNull CommandRunner commandRunner) {
+        this.commandRunner = commandRunner;
+    }
+
+    @NotNull
+    static GnomeInterfaceMonitor getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    /**
+     * Creates a monitor whose {@code gsettings} processes run in the environment of the given session.
+     * Only the {@code PATH} of the process is kept, the variables the session doesn't set (e.g.
+     * {@code XDG_CONFIG_HOME} or {@code DBUS_SESSION_BUS_ADDRESS}) mustn't fall back to the ones of the process.
+     */
+    @NotNull
+    static GnomeInterfaceMonitor forSession(@NotNull SessionContext session) {
+        if (session.isCurrent()) {
+            return getInstance();
+        }
+        return new GnomeInterfaceMonitor(command -> {
+            final ProcessBuilder builder = new ProcessBuilder(command.split(" "));
+            final Map<String, String> environment = builder.environment();
+            final String path = environment.get("PATH");
+            environment.clear();
+            if (path != null) {
+                environment.put("PATH", path);
+            }
+            environment.putAll(session.getEnvironment());
+            return builder.start();
+        });
+    }
+
+    /**
+     * @return the last observed snapshot while monitoring; otherwise a freshly queried one
+     */
+    @NotNull
+    AppearanceSnapshot current() {
+        final AppearanceSnapshot current = snapshot.get();
+        if (current != null && isMonitoring()) {
+            return current;
+        }
+        return query();
+    }
+
+    /**
+     * Reads every key of the schema with one {@code gsettings} process.
+     */
+    @NotNull
+    AppearanceSnapshot query() {
+        final Map<String, String> values = new HashMap<>();
+        try {
+            list(LIST_CMD, values);
+        } catch (IOException e) {
+            logger.error("Couldn't detect Linux OS theme", e);
+        }
+        return createSnapshot(values);
+    }
+
+    /**
+     * Reads every key of the schema like {@link #query()}, but fails instead of returning no values.
+     *
+     * @throws IOException if {@code gsettings} can't be run or doesn't list the keys, e.g. the schema isn't installed
+     */
+    @NotNull
+    AppearanceSnapshot queryOrFail() throws IOException {
+        final Map<String, String> values = new HashMap<>();
+        list(LIST_CMD, values);
+        if (values.isEmpty()) {
+            throw new IOException("gsettings hasn't listed the keys of " + SCHEMA);
+        }
+        return createSnapshot(values);
+    }
+
+    /**
+     * Reads the values of the keys that apply while the user hasn't changed them: the defaults of the schema,
+     * or the ones set by the system databases of the dconf profile. The user database isn't read.
+     *
+     * @throws IOException if {@code gsettings} can't be run or doesn't list the keys
+     */
+    @NotNull
+    Map<String, String> queryDefaults() throws IOException {
+        final Map<String, String> values = new HashMap<>();
+        list(LIST_DEFAULTS_CMD, values);
+        if (values.isEmpty()) {
+            throw new IOException("gsettings hasn't listed the defaults of " + SCHEMA);
+        }
+        return values;
+    }
+
+    private void list(@NotNull String command, @NotNull Map<String, String> values) throws IOException {
+        Process process = startProcess(command);
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            //Expected input = org.gnome.desktop.interface gtk-theme '$GtkThemeName'
+            String readLine;
+            while ((readLine = reader.readLine()) != null) {
+                final String[] schemaKeyValue = readLine.split(" ", 3);
+                if (schemaKeyValue.length == 3) {
+                    values.put(schemaKeyValue[1], schemaKeyValue[2]);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if the process is running, so the last snapshot is up to date
+     */
+    boolean isMonitoring() {
+        return monitorThread != null && healthState == MonitorHealth.State.RUNNING;
+    }
+
+    @NotNull
+    MonitorHealth health() {
+        return new MonitorHealth(monitorThread == null ? MonitorHealth.State.STOPPED : healthState,
+                restarts.get(), lastFailure, lastFailureTimeMillis);
+    }
+
+    /**
+     * Registers a subscriber that is called on the monitoring thread with every change of the schema.
+     * Starts the monitoring if it isn't running yet.
+     *
+     * @return the current snapshot, the baseline of the subsequent changes
+     */
+    @NotNull
+    synchronized AppearanceSnapshot subscribe(@NotNull Consumer<AppearanceSnapshot> subscriber) {
+        if (!subscribers.contains(subscriber)) {
+            subscribers.add(subscriber);
+        }
+        final MonitorThread currentMonitorThread = monitorThread;
+        if (currentMonitorThread == null || currentMonitorThread.isInterrupted()) {
+            if (currentMonitorThread != null) {
+                GlobalMetrics.monitorRestarted();
+            }
+            final MonitorThread newMonitorThread = new MonitorThread(this);
+            this.monitorThread = newMonitorThread;
+            this.healthState = MonitorHealth.State.RUNNING;
+            newMonitorThread.start();
+        }
+        return snapshot.get();
+    }
+
+    /**
+     * Removes the subscriber; the monitoring is stopped when the last one is removed.
+     */
+    synchronized void unsubscribe(@Nullable Consumer<AppearanceSnapshot> subscriber) {
+        if (subscribers.remove(subscriber) && subscribers.isEmpty()) {
+            final MonitorThread currentMonitorThread = monitorThread;
+            if (currentMonitorThread != null) {
+                currentMonitorThread.interrupt();
+                this.monitorThread = null;
+                this.stoppedThread = currentMonitorThread;
+                this.healthState = MonitorHealth.State.STOPPED;
+            }
+        }
+    }
+
+    /**
+     * Waits until the monitoring stopped by the last unsubscription has ended, along with its process.
+     *
+     * @return {@code true} if no monitoring thread of the monitor is running, or it's still in use by other subscribers
+     */
+    boolean awaitStopped(long timeoutNanos) throws InterruptedException {
+        final MonitorThread stopped = stoppedThread;
+        return monitorThread != null || stopped == null || stopped.join(timeoutNanos);
+    }
+
+    @NotNull
+    private Process startProcess(@NotNull String command) throws IOException {
+        GlobalMetrics.processSpawned();
+        final ProcessSpawnEvent event = new ProcessSpawnEvent();
+        event.begin();
+        final long start = System.nanoTime();
+        final Process process = commandRunner.start(command);
+        if (event.isEnabled()) {
+            event.command = command;
+            event.startDuration = System.nanoTime() - start;
+            event.pid = pid(process);
+            process.onExit().thenAccept(exited -> {
+                event.end();
+                if (event.shouldCommit()) {
+                    event.exitCode = exited.exitValue();
+                    event.commit();
+                }
+            });
+        }
+        return process;
+    }
+
+    private static long pid(Process process) {
+        try {
+            return process.pid();
+        } catch (UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+
+    private void publish(@NotNull Map<String, String> values) {
+        final AppearanceSnapshot next = createSnapshot(values);
+        snapshot.set(next);
+        for (Consumer<AppearanceSnapshot> subscriber : subscribers) {
+            try {
+                subscriber.accept(next);
+            } catch (RuntimeException e) {
+                logger.error("Caught exception during appearance change processing ", e);
+            }
+        }
+    }
+
+    @NotNull
+    private AppearanceSnapshot createSnapshot(@NotNull Map<String, String> values) {
+        // the theme is dark if either of the keys says so
+        final boolean dark = isDarkTheme(values.get("gtk-theme")) || isDarkTheme(values.get("color-scheme"));
+        return new AppearanceSnapshot(dark, values);
+    }
+
+    boolean isDarkTheme(@Nullable String value) {
+        return value != null && darkThemeNamePattern.matcher(value).matches();
+    }
+
+    /**
+     * Starts the {@code gsettings} processes; replaceable for testing and benchmarking.
+     */
+    @FunctionalInterface
+    interface CommandRunner {
+        @NotNull
+        Process start(@NotNull String command) throws IOException;
+    }
+
+    private static final class InstanceHolder {
+        private static final GnomeInterfaceMonitor INSTANCE = new GnomeInterfaceMonitor(Runtime.getRuntime()::exec);
+    }
+
+    /**
+     * Thread implementation for reading the output of the monitoring process, restarting the process if it exits
+     */
+    private static final class MonitorThread extends MonitorTask {
+
+        private final GnomeInterfaceMonitor monitor;
+        // the keys of the schema and their values, matched by index against the records of the process
+        private String[] keys;
+        private String[] values;
+        private int keyCount;
+
+        private volatile Process process;
+
+        MonitorThread(@NotNull GnomeInterfaceMonitor monitor) {
+            super("GTK Theme Detector Thread");
+            this.monitor = monitor;
+            final AppearanceSnapshot initial = monitor.query();
+            monitor.snapshot.set(initial);
+            reset(initial.getValues());
+        }
+
+        private void reset(@NotNull Map<String, String> snapshotValues) {
+            keys = snapshotValues.keySet().toArray(new String[0]);
+            values = new String[keys.length];
+            keyCount = keys.length;
+            for (int i = 0; i < keyCount; i++) {
+                values[i] = snapshotValues.get(keys[i]);
+            }
+        }
+
+        /**
+         * @return the current values, for a publication
+         */
+        @NotNull
+        private Map<String, String> currentValues() {
+            final Map<String, String> current = new HashMap<>(keyCount * 2);
+            for (int i = 0; i < keyCount; i++) {
+                current.put(keys[i], values[i]);
+            }
+            return current;
+        }
+
+        /**
+         * Also destroys the process, which ends the blocking read of its output.
+         */
+        @Override
+        void interrupt() {
+            super.interrupt();
+            final Process currentProcess = process;
+            if (currentProcess != null) {
+                currentProcess.destroy();
+            }
+        }
+
+        @Override
+        public void run() {
+            long backoffMillis = MonitorSupervisor.INITIAL_BACKOFF_MILLIS;
+            while (!isInterrupted()) {
+                final long start = System.nanoTime();
+                String failure;
+                try {
+                    failure = monitorProcess();
+                } catch (IOException e) {
+                    failure = "the monitoring process has failed: " + e.getMessage();
+                }
+                if (isInterrupted() || !isCurrent()) {
+                    break;
+                }
+                // a process running long enough is considered to have recovered, so the backoff starts over
+                if (System.nanoTime() - start >= MonitorSupervisor.STABLE_RUN_NANOS) {
+                    backoffMillis = MonitorSupervisor.INITIAL_BACKOFF_MILLIS;
+                }
+                final long delayMillis = MonitorSupervisor.jitter(backoffMillis);
+                backoffMillis = Math.min(backoffMillis * 2, MonitorSupervisor.MAX_BACKOFF_MILLIS);
+                monitor.lastFailure = failure;
+                monitor.lastFailureTimeMillis = System.currentTimeMillis();
+                monitor.healthState = MonitorHealth.State.RESTARTING;
+                logger.warn("The gsettings monitor has stopped ({}), restarting it in {} ms", failure, delayMillis);
+                try {
+                    Thread.sleep(delayMillis);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (isInterrupted() || !isCurrent()) {
+                    break;
+                }
+                monitor.restarts.incrementAndGet();
+                GlobalMetrics.monitorRestarted();
+                resynchronize();
+            }
+            logger.debug("ThemeDetectorThread has been interrupted!");
+        }
+
+        /**
+         * Re-reads the schema, as changes could have been missed while the process wasn't running.
+         */
+        private void resynchronize() {
+            final AppearanceSnapshot current = monitor.query();
+            reset(current.getValues());
+            if (isCurrent()) {
+                monitor.healthState = MonitorHealth.State.RUNNING;
+                monitor.publish(current.getValues());
+            }
+        }
+
+        /**
+         * Runs a monitoring process until it exits or the thread is interrupted.
+         *
+         * @return the reason the process has stopped
+         */
+        @NotNull
+        private String monitorProcess() throws IOException {
+            final Process monitoringProcess = monitor.startProcess(MONITORING_CMD);
+            process = monitoringProcess;
+            if (isInterrupted()) {
+                // the process could have been started after the interruption destroyed the previous one
+                destroy(monitoringProcess);
+                return "interrupted";
+            }
+            try (InputStream output = monitoringProcess.getInputStream()) {
+                //Expected input = gtk-theme: '$GtkThemeName'
+                final GsettingsMonitorReader reader = new GsettingsMonitorReader(output);
+                while (!isInterrupted() && reader.next()) {
+                    final MonitorRecordEvent event = new MonitorRecordEvent();
+                    final boolean changed = update(reader);
+                    if (event.shouldCommit()) {
+                        event.key = reader.key();
+                        event.value = reader.value();
+                        event.changed = changed;
+                        event.commit();
+                    }
+                    // a stopped thread can still be reading while its successor is running
+                    if (changed && isCurrent()) {
+                        monitor.publish(currentValues());
+                    }
+                }
+                if (reader.getSkippedRecords() > 0) {
+                    logger.debug("Skipped {} malformed lines of the gsettings monitor", reader.getSkippedRecords());
+                }
+            } catch (IOException e) {
+                destroy(monitoringProcess);
+                throw e;
+            } finally {
+                process = null;
+            }
+            if (isInterrupted()) {
+                destroy(monitoringProcess);
+                return "interrupted";
+            }
+            // the end of the output usually means that the process has exited
+            try {
+                if (monitoringProcess.waitFor(EXIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return "the monitoring process has exited with " + monitoringProcess.exitValue();
+                }
+            } catch (InterruptedException e) {
+                return "interrupted";
+            } finally {
+                destroy(monitoringProcess);
+            }
+            return "the output of the monitoring process has ended";
+        }
+
+        /**
+         * Stores the value of the record; a value that is the same as the stored one (e.g. the theme has been
+         * set again) is neither copied nor published.
+         *
+         * @return {@code true} if the value has changed
+         */
+        private boolean update(GsettingsMonitorReader reader) {
+            for (int i = 0; i < keyCount; i++) {
+                if (reader.keyEquals(keys[i])) {
+                    if (reader.valueEquals(values[i])) {
+                        return false;
+                    }
+                    values[i] = reader.value();
+                    return true;
+                }
+            }
+            // a key the listing didn't have, e.g. of a newer schema
+            if (keyCount == keys.length) {
+                keys = Arrays.copyOf(keys, Math.max(8, keyCount * 2));
+                values = Arrays.copyOf(values, keys.length);
+            }
+            keys[keyCount] = reader.key();
+            values[keyCount] = reader.value();
+            keyCount++;
+            return true;
+        }
+
+        /**
+         * Destroys the process and waits for its exit, so it doesn't outlive the thread; a process ignoring
+         * the termination is killed.
+         */
+        private static void destroy(Process monitoringProcess) {
+            if (!monitoringProcess.isAlive()) {
+                return;
+            }
+            monitoringProcess.destroy();
+            // the interruption of the thread mustn't cut the wait short
+            final boolean interrupted = Thread.interrupted();
+            try {
+                if (!monitoringProcess.waitFor(EXIT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                    monitoringProcess.destroyForcibly();
+                }
+            } catch (InterruptedException e) {
+                monitoringProcess.destroyForcibly();
+            } finally {
+                if (interrupted) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            logger.debug("Monitoring process has been destroyed!");
+        }
+
+        private boolean isCurrent() {
+            return monitor.monitorThread == this;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.jthemedetecor;
+
+import com.jthemedetecor.util.KdeGlobals;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Used for detecting the dark theme on KDE Plasma by reading the color settings
+ * from {@code ~/.config/kdeglobals}. The file is only re-read if it has changed.
+ */
+class KdeThemeDetector extends OsThemeDetector {
+
+    private static final Logger logger = LoggerFactory.getLogger(KdeThemeDetector.class);
+
+    private static final String SETTINGS_FILE_NAME = "kdeglobals";
+
+    private final Path settingsFile;
+
+    private final ParsedFileCache<KdeGlobals> settings;
+    private volatile FileWatchTask detectorThread;
+
+    KdeThemeDetector() {
+        this(settingsFile(SessionContext.current()));
+    }
+
+    KdeThemeDetector(@NotNull Path settingsFile) {
+        this.settingsFile = settingsFile;
+        this.settings = new ParsedFileCache<>(settingsFile, KdeGlobals::read);
+    }
+
+    /**
+     * @return {@code true} if the settings file of Plasma exists
+     */
+    static boolean isAvailable(@NotNull SessionContext session) {
+        return Files.isRegularFile(settingsFile(session));
+    }
+
+    @NotNull
+    static Path settingsFile(@NotNull SessionContext session) {
+        return session.configHome().resolve(SETTINGS_FILE_NAME);
+    }
+
+    @Override
+    protected boolean queryDark() {
+        try {
+            return probeDark();
+        } catch (IOException e) {
+            logger.error("Couldn't read the KDE settings", e);
+        }
+        return false;
+    }
+
+    @Override
+    boolean probeDark() throws IOException {
+        return settings.get(!isMonitoring()).isDark();
+    }
+
+    @Override
+    protected boolean isMonitoring() {
+        return detectorThread != null;
+    }
+
+    @Override
+    protected void startMonitoring() {
+        final FileWatchTask currentDetectorThread = detectorThread;
+        if (currentDetectorThread == null || currentDetectorThread.isInterrupted()) {
+            refreshState();
+            final FileWatchTask newDetectorThread =
+                    new FileWatchTask("KDE Theme Detector Thread", settingsFile, this::onSettingsChanged);
+            this.detectorThread = newDetectorThread;
+            startMonitorTask(newDetectorThread);
+        }
+    }
+
+    @Override
+    protected void stopMonitoring() {
+        final FileWatchTask currentDetectorThread = detectorThread;
+        if (currentDetectorThread != null) {
+            currentDetectorThread.interrupt();
+            this.detectorThread = null;
+        }
+    }
+
+    private void onSettingsChanged() {
+        final boolean currentDetection;
+        try {
+            currentDetection = settings.get(true).isDark();
+        } catch (IOException e) {
+            logger.error("Couldn't read the KDE settings", e);
+            return;
+        }
+        onThemeDetected(currentDetection);
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A snapshot of a latency histogram. The durations are kept in power-of-two buckets, so the percentiles
+ * are upper bounds that are accurate within a factor of two.
+ */
+public final class LatencyStatistics {
+
+    private final long[] bucketCounts;
+    private final long count;
+    private final long totalNanos;
+    private final long maxNanos;
+
+    LatencyStatistics(@NotNull long[] bucketCounts, long totalNanos, long maxNanos) {
+        this.bucketCounts = bucketCounts;
+        long count = 0;
+        for (long bucketCount : bucketCounts) {
+            count += bucketCount;
+        }
+        this.count = count;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+    }
+
+    /**
+     * @return the number of recorded durations
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * @return the sum of the recorded durations in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    /**
+     * @return the longest recorded duration in nanoseconds
+     */
+    public long getMaxNanos() {
+        return maxNanos;
+    }
+
+    /**
+     * @return the average duration in nanoseconds; {@code 0} if nothing has been recorded
+     */
+    public long getMeanNanos() {
+        return count == 0 ? 0 : totalNanos / count;
+    }
+
+    /**
+     * @return the upper bound of the median duration in nanoseconds
+     */
+    public long getMedianNanos() {
+        return getPercentileNanos(50);
+    }
+
+    /**
+     * @return the upper bound of the 99th percentile duration in nanoseconds
+     */
+    public long getP99Nanos() {
+        return getPercentileNanos(99);
+    }
+
+    /**
+     * @param percentile the percentile, between {@code 0} and {@code 100}
+     * @return the upper bound of the bucket holding the percentile, in nanoseconds;
+     * {@code 0} if nothing has been recorded
+     */
+    public long getPercentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("The percentile must be between 0 and 100: " + percentile);
+        }
+        final long rank = Math.max(1, (long) Math.ceil(count * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < bucketCounts.length; i++) {
+            seen += bucketCounts[i];
+            if (seen >= rank) {
+                return Math.min(bucketUpperBound(i), maxNanos);
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return the number of durations per bucket; bucket {@code i} holds the durations of
+     * {@code [2^(i-1), 2^i)} nanoseconds
+     */
+    @NotNull
+    public long[] getBucketCounts() {
+        return bucketCounts.clone();
+    }
+
+    private static long bucketUpperBound(int bucket) {
+        return bucket == 0 ? 0 : bucket == Long.SIZE - 1 ? Long.MAX_VALUE : (1L << bucket) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "LatencyStatistics{count=" + count +
+                ", mean=" + TimeUnit.NANOSECONDS.toMicros(getMeanNanos()) + "us" +
+                ", p50=" + TimeUnit.NANOSECONDS.toMicros(getMedianNanos()) + "us" +
+                ", p99=" + TimeUnit.NANOSECONDS.toMicros(getP99Nanos()) + "us" +
+                ", max=" + TimeUnit.NANOSECONDS.toMicros(maxNanos) + "us}";
+    }
+}
@@ -0,0 +1,431 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.jthemedetecor;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Delivers the changes of a value (e.g. the theme) to the listeners of a detector.
+ * <p>
+ * Every listener is notified through its own executor and has a single pending slot: while a delivery
+ * is in progress, only the latest value is kept for the next one. This way a slow or stuck listener
+ * can't delay the others or the detection itself. The values can be versioned, then a listener is never
+ * handed a version older than the one it has already seen, however the concurrent dispatches interleave.
+ * <p>
+ * The slots are kept in an immutable array in registration order, replaced with a CAS on every
+ * registration and removal, so the dispatching neither locks nor allocates.
+ * <p>
+ * A listener can also be held weakly: once it is garbage collected, its reference is enqueued
+ * and the slot is dropped by the next {@link #purge()}.
+ */
+final class ListenerDispatcher<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ListenerDispatcher.class);
+
+    static final long DEFAULT_TIMEOUT_MILLIS = 1000;
+
+    // the version of the values dispatched without one, which are never skipped
+    private static final long UNVERSIONED = 0;
+
+    // only tells whether the invocations are recorded, so a delivery allocates no event without a recording
+    private static final ListenerInvocationEvent INVOCATION_PROBE = new ListenerInvocationEvent();
+
+    private final AtomicReference<ListenerSlot[]> slots = new AtomicReference<>(emptySlots());
+    private final ReferenceQueue<Object> collectedListeners = new ReferenceQueue<>();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder late = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+
+    private volatile long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_TIMEOUT_MILLIS);
+
+    /**
+     * Registers the listener, unless it is registered already.
+     *
+     * @return {@code true} if the registry was empty before, so the listener is the first one
+     */
+    boolean add(@NotNull Consumer<? super T> listener, @NotNull Executor executor) {
+        return add(new ListenerSlot(listener, null, executor), listener) == 0;
+    }
+
+    /**
+     * Registers the listener through a weak reference, unless it is registered already.
+     *
+     * @return {@code true} if the registry was empty before, so the listener is the first one
+     */
+    boolean addWeak(@NotNull Consumer<? super T> listener, @NotNull Executor executor) {
+        final ListenerSlot slot = new ListenerSlot(null, listener, executor);
+        final int previousSize = add(slot, listener);
+        if (previousSize < 0) {
+            // the unused reference mustn't be enqueued
+            slot.weakListener.clear();
+        }
+        return previousSize == 0;
+    }
+
+    /**
+     * @return the number of the slots before the addition; {@code -1} if the listener is registered already
+     */
+    private int add(ListenerSlot slot, Consumer<? super T> listener) {
+        while (true) {
+            final ListenerSlot[] current = slots.get();
+            if (indexOf(current, listener) >= 0) {
+                return -1;
+            }
+            final ListenerSlot[] next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = slot;
+            if (slots.compareAndSet(current, next)) {
+                return current.length;
+            }
+        }
+    }
+
+    /**
+     * Removes the listener, if it is registered.
+     *
+     * @return {@code true} if the registry has become empty by the removal
+     */
+    boolean remove(@Nullable Consumer<?> listener) {
+        return listener != null && removeSlot(listener);
+    }
+
+    /**
+     * Removes every listener.
+     *
+     * @return {@code true} if the registry wasn't empty
+     */
+    boolean clear() {
+        return slots.getAndSet(emptySlots()).length > 0;
+    }
+
+    /**
+     * Removes the slots of the collected weak listeners without scanning the registry.
+     *
+     * @return {@code true} if the registry has become empty by the purge
+     */
+    boolean purge() {
+        boolean emptied = false;
+        Reference<?> reference;
+        while ((reference = collectedListeners.poll()) != null) {
+            emptied |= removeSlot(((ListenerDispatcher<?>.WeakListener) reference).slot);
+        }
+        return emptied;
+    }
+
+    /**
+     * @return {@code true} if any listener is held through a weak reference
+     */
+    boolean hasWeakListeners() {
+        for (ListenerSlot slot : slots.get()) {
+            if (slot.weakListener != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the slot of a listener.
+     *
+     * @param target the listener or the slot itself
+     */
+    private boolean removeSlot(Object target) {
+        while (true) {
+            final ListenerSlot[] current = slots.get();
+            final int index = indexOf(current, target);
+            if (index < 0) {
+                return false;
+            }
+            final ListenerSlot[] next = Arrays.copyOf(current, current.length - 1);
+            System.arraycopy(current, index + 1, next, index, current.length - index - 1);
+            if (slots.compareAndSet(current, next)) {
+                return next.length == 0;
+            }
+        }
+    }
+
+    private int indexOf(ListenerSlot[] slots, Object target) {
+        for (int i = 0; i < slots.length; i++) {
+            if (slots[i] == target || target.equals(slots[i].listener())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return {@code true} if no notification is pending or running
+     */
+    boolean isIdle() {
+        for (ListenerSlot slot : slots.get()) {
+            if (slot.scheduled.get()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    boolean isEmpty() {
+        return slots.get().length == 0;
+    }
+
+    int size() {
+        return slots.get().length;
+    }
+
+    void setTimeout(long timeout, @NotNull TimeUnit unit) {
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    /**
+     * Hands the value over to every listener without waiting for them.
+     */
+    void dispatch(@NotNull T value) {
+        dispatch(value, UNVERSIONED);
+    }
+
+    /**
+     * Hands a version of the value over to every listener without waiting for them. A listener skips
+     * the versions that aren't newer than the last one delivered to it or pending for it.
+     *
+     * @param version a positive number that grows with every new value
+     */
+    void dispatch(@NotNull T value, long version) {
+        final Offer<T> offer = new Offer<>(value, version);
+        final ListenerSlot[] current = slots.get();
+        for (int i = 0; i < current.length; i++) {
+            current[i].offer(offer);
+        }
+    }
+
+    @NotNull
+    DispatchStatistics statistics(long receivedEvents, long suppressedEvents) {
+        return new DispatchStatistics(receivedEvents, suppressedEvents,
+                delivered.sum(), dropped.sum(), late.sum(), failed.sum());
+    }
+
+    /**
+     * @return the notification durations of the registered listeners, in registration order; they are only
+     * recorded while {@link GlobalMetrics#listenerMetricsEnabled()}
+     */
+    @NotNull
+    List<ListenerStatistics> listenerStatistics() {
+        final ListenerSlot[] current = slots.get();
+        final List<ListenerStatistics> statistics = new ArrayList<>(current.length);
+        for (ListenerSlot slot : current) {
+            final Consumer<? super T> listener = slot.listener();
+            statistics.add(new ListenerStatistics(listener == null ? "collected" : listener.toString(),
+                    slot.weakListener != null, slot.deliveryLatency.snapshot(), slot.dispatchTime.snapshot()));
+        }
+        return statistics;
+    }
+
+    @SuppressWarnings("unchecked")
+    private ListenerSlot[] emptySlots() {
+        return (ListenerSlot[]) new ListenerDispatcher<?>.ListenerSlot[0];
+    }
+
+    private final class ListenerSlot implements Runnable {
+
+        // exactly one of them is set
+        private final Consumer<? super T> strongListener;
+        private final WeakListener weakListener;
+        private final Executor executor;
+        private final AtomicReference<Offer<T>> pending = new AtomicReference<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private final LatencyHistogram deliveryLatency = new LatencyHistogram();
+        private final LatencyHistogram dispatchTime = new LatencyHistogram();
+
+        // the time of the latest offer, while the listener metrics or the invocation events are enabled; as it isn't
+        // swapped together with the value, a delivery can be timed from an adjacent offer, which is accurate enough
+        private volatile long offeredAt;
+        // the start of the running delivery; 0 if there is none
+        private volatile long deliveryStart;
+        private volatile boolean reportedStuck;
+        // only accessed by the running delivery loop
+        private long deliveredVersion;
+
+        ListenerSlot(@Nullable Consumer<? super T> strongListener,
+                     @Nullable Consumer<? super T> weakListener,
+                     @NotNull Executor executor) {
+            this.strongListener = strongListener;
+            this.weakListener = weakListener == null ? null : new WeakListener(weakListener, this);
+            this.executor = executor;
+        }
+
+        /**
+         * @return the listener; {@code null} if it has been garbage collected
+         */
+        @Nullable
+        Consumer<? super T> listener() {
+            return strongListener != null ? strongListener : weakListener.get();
+        }
+
+        void offer(Offer<T> offer) {
+            if (GlobalMetrics.listenerMetricsEnabled() || INVOCATION_PROBE.isEnabled()) {
+                offeredAt = System.nanoTime();
+            }
+            // either the pending value or the offered one, whichever is older, is dropped
+            if (pending.getAndAccumulate(offer, Offer::newer) != null) {
+                dropped.increment();
+            }
+            if (scheduled.compareAndSet(false, true)) {
+                schedule();
+            } else {
+                checkStuck();
+            }
+        }
+
+        private void schedule() {
+            try {
+                executor.execute(this);
+            } catch (RejectedExecutionException e) {
+                scheduled.set(false);
+                if (pending.getAndSet(null) != null) {
+                    failed.increment();
+                }
+                logger.error("Couldn't schedule the notification of a listener", e);
+            }
+        }
+
+        private void checkStuck() {
+            final long start = deliveryStart;
+            if (start != 0 && !reportedStuck && System.nanoTime() - start > timeoutNanos) {
+                reportedStuck = true;
+                logger.warn("The listener {} has been running for more than {} ms, its notifications are coalesced",
+                        listener(), TimeUnit.NANOSECONDS.toMillis(timeoutNanos));
+            }
+        }
+
+        @Override
+        public void run() {
+            while (true) {
+                final long valueOfferedAt = offeredAt;
+                final Offer<T> offer = pending.getAndSet(null);
+                if (offer != null) {
+                    if (offer.version == UNVERSIONED) {
+                        deliver(offer.value, valueOfferedAt);
+                    } else if (offer.version > deliveredVersion) {
+                        deliveredVersion = offer.version;
+                        deliver(offer.value, valueOfferedAt);
+                    } else {
+                        // a concurrent dispatch has delivered a newer version already
+                        dropped.increment();
+                    }
+                    continue;
+                }
+                scheduled.set(false);
+                // a value could have arrived after the slot was found empty but before it was unscheduled
+                if (pending.get() == null || !scheduled.compareAndSet(false, true)) {
+                    return;
+                }
+            }
+        }
+
+        private void deliver(T value, long valueOfferedAt) {
+            final Consumer<? super T> listener = listener();
+            if (listener == null) {
+                return;
+            }
+            final boolean recording = GlobalMetrics.listenerMetricsEnabled();
+            final ListenerInvocationEvent event = INVOCATION_PROBE.isEnabled() ? new ListenerInvocationEvent() : null;
+            if (event != null) {
+                event.begin();
+            }
+            final long start = System.nanoTime();
+            deliveryStart = start;
+            // the offers aren't timed until the metrics or the events are enabled
+            final long latency = valueOfferedAt == 0 ? 0 : start - valueOfferedAt;
+            if (recording && valueOfferedAt != 0) {
+                deliveryLatency.record(latency);
+            }
+            boolean succeeded = false;
+            try {
+                listener.accept(value);
+                delivered.increment();
+                succeeded = true;
+            } catch (RuntimeException e) {
+                failed.increment();
+                logger.error("Caught exception during listener notifying ", e);
+            } finally {
+                deliveryStart = 0;
+                reportedStuck = false;
+                final long duration = System.nanoTime() - start;
+                if (recording) {
+                    dispatchTime.record(duration);
+                }
+                if (duration > timeoutNanos) {
+                    late.increment();
+                }
+                if (event != null) {
+                    event.end();
+                    if (event.shouldCommit()) {
+                        event.listener = listener.getClass().getName();
+                        event.value = String.valueOf(value);
+                        event.deliveryLatency = latency;
+                        event.failed = !succeeded;
+                        event.commit();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * A dispatched value, shared by the slots.
+     */
+    private static final class Offer<T> {
+
+        private final T value;
+        private final long version;
+
+        Offer(T value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+
+        static <T> Offer<T> newer(@Nullable Offer<T> pending, Offer<T> offered) {
+            return pending == null || offered.version == UNVERSIONED || offered.version >= pending.version ?
+                    offered : pending;
+        }
+    }
+
+    private final class WeakListener extends WeakReference<Consumer<? super T>> {
+
+        private final ListenerSlot slot;
+
+        WeakListener(Consumer<? super T> listener, ListenerSlot slot) {
+            super(listener, collectedListeners);
+            this.slot = slot;
+        }
+    }
+}
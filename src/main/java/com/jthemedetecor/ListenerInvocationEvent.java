@@ -0,0 +1,48 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event of a listener notification, spanning the invocation of the listener.
+ */
+@Name("com.jthemedetecor.ListenerInvocation")
+@Label("Listener Invocation")
+@Description("A listener notified of a theme or appearance change")
+@Category("jSystemThemeDetector")
+@StackTrace(false)
+final class ListenerInvocationEvent extends jdk.jfr.Event {
+
+    @Label("Listener")
+    String listener;
+
+    @Label("Value")
+    String value;
+
+    @Label("Delivery Latency")
+    @Description("The time the value waited for the delivery")
+    @Timespan
+    long deliveryLatency;
+
+    @Label("Failed")
+    boolean failed;
+}
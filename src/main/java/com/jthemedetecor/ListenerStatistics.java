@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * The timings of the notifications of a listener.
+ */
+public final class ListenerStatistics {
+
+    private final String listener;
+    private final boolean weak;
+    private final LatencyStatistics deliveryLatency;
+    private final LatencyStatistics dispatchTime;
+
+    ListenerStatistics(@NotNull String listener, boolean weak,
+                       @NotNull LatencyStatistics deliveryLatency, @NotNull LatencyStatistics dispatchTime) {
+        this.listener = listener;
+        this.weak = weak;
+        this.deliveryLatency = deliveryLatency;
+        this.dispatchTime = dispatchTime;
+    }
+
+    /**
+     * @return the string representation of the listener; {@code "collected"} if it was held weakly
+     * and has been garbage collected
+     */
+    @NotNull
+    public String getListener() {
+        return listener;
+    }
+
+    /**
+     * @return {@code true} if the listener is held through a weak reference
+     */
+    public boolean isWeak() {
+        return weak;
+    }
+
+    /**
+     * @return the times from the dispatch of the changes until the listener started processing them,
+     * including the time spent in the queue of the listener's executor
+     */
+    @NotNull
+    public LatencyStatistics getDeliveryLatency() {
+        return deliveryLatency;
+    }
+
+    /**
+     * @return the durations of the listener's notifications
+     */
+    @NotNull
+    public LatencyStatistics getDispatchTime() {
+        return dispatchTime;
+    }
+
+    @Override
+    public String toString() {
+        return "ListenerStatistics{listener=" + listener + ", weak=" + weak +
+                ", deliveryLatency=" + deliveryLatency + ", dispatchTime=" + dispatchTime + '}';
+    }
+}
@@ -14,19 +14,12 @@
 
 package com.jthemedetecor;
 
-import com.jthemedetecor.util.ConcurrentHashSet;
 import com.sun.jna.Callback;
 import de.jangassen.jfa.foundation.Foundation;
 import de.jangassen.jfa.foundation.ID;
-import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
 /**
@@ -38,22 +31,23 @@ class MacOSThemeDetector extends OsThemeDetector {
 
     private static final Logger logger = LoggerFactory.getLogger(MacOSThemeDetector.class);
 
-    private final Set<Consumer<Boolean>> listeners = new ConcurrentHashSet<>();
     private final Pattern themeNamePattern = Pattern.compile(".*dark.*", Pattern.CASE_INSENSITIVE);
-    private final ExecutorService callbackExecutor = Executors.newSingleThreadExecutor(DetectorThread::new);
 
     private final Callback themeChangedCallback = new Callback() {
         @SuppressWarnings("unused")
         public void callback() {
-            callbackExecutor.execute(() -> notifyListeners(isDark()));
+            // the callback runs on the AppKit thread, which mustn't be blocked
+            DetectorExecution.executor().execute(() -> onThemeDetected(queryDark()));
         }
     };
 
+    private ID observer = ID.NIL;
+
     MacOSThemeDetector() {
         initObserver();
     }
 
-    private void initObserver() {
+    private synchronized void initObserver() {
         final Foundation.NSAutoreleasePool pool = new Foundation.NSAutoreleasePool();
         try {
             final ID delegateClass = Foundation.allocateObjcClassPair(Foundation.getObjcClass("NSObject"), "NSColorChangesObserver");
@@ -65,6 +59,7 @@ class MacOSThemeDetector extends OsThemeDetector {
             }
 
             final ID delegate = Foundation.invoke("NSColorChangesObserver", "new");
+            observer = delegate;
             Foundation.invoke(
                     Foundation.invoke("NSDistributedNotificationCenter", "defaultCenter"),
                     "addObserver:selector:name:object:",
@@ -77,9 +72,29 @@ class MacOSThemeDetector extends OsThemeDetector {
         }
     }
 
+    /**
+     * Unregisters and releases the theme-change observer.
+     */
+    @Override
+    synchronized void release() {
+        if (ID.NIL.equals(observer)) {
+            return;
+        }
+        final Foundation.NSAutoreleasePool pool = new Foundation.NSAutoreleasePool();
+        try {
+            Foundation.invoke(Foundation.invoke("NSDistributedNotificationCenter", "defaultCenter"), "removeObserver:", observer);
+            Foundation.invoke(observer, "release");
+        } catch (RuntimeException e) {
+            logger.error("Couldn't remove the theme-change observer", e);
+        } finally {
+            observer = ID.NIL;
+            pool.drain();
+        }
+    }
+
     @SuppressWarnings("DuplicatedCode")
     @Override
-    public boolean isDark() {
+    protected boolean queryDark() {
         final Foundation.NSAutoreleasePool pool = new Foundation.NSAutoreleasePool();
         try {
             final ID userDefaults = Foundation.invoke("NSUserDefaults", "standardUserDefaults");
@@ -93,30 +108,16 @@ class MacOSThemeDetector extends OsThemeDetector {
         return false;
     }
 
-    private boolean isDarkTheme(String themeName) {
-        return themeName != null && themeNamePattern.matcher(themeName).matches();
-    }
-
-    @Override
-    public void registerListener(@NotNull Consumer<Boolean> darkThemeListener) {
-        listeners.add(darkThemeListener);
-    }
-
+    /**
+     * The theme-change observer is registered during the whole lifetime of the detector, until it's closed.
+     */
     @Override
-    public void removeListener(@Nullable Consumer<Boolean> darkThemeListener) {
-        listeners.remove(darkThemeListener);
+    protected boolean isMonitoring() {
+        return !isClosed();
     }
 
-    private void notifyListeners(boolean isDark) {
-        listeners.forEach(listener -> listener.accept(isDark));
-    }
-
-    private static final class DetectorThread extends Thread {
-        DetectorThread(@NotNull Runnable runnable) {
-            super(runnable);
-            setName("MacOS Theme Detector Thread");
-            setDaemon(true);
-        }
+    private boolean isDarkTheme(String themeName) {
+        return themeName != null && themeNamePattern.matcher(themeName).matches();
     }
 }
 
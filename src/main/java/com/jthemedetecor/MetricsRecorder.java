@@ -0,0 +1,78 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The counters of a detector: the change events, the reads served from the monitored state
+ * and the latency of the os queries. The recording is lock-free.
+ */
+final class MetricsRecorder {
+
+    private final LongAdder receivedEvents = new LongAdder();
+    private final LongAdder suppressedEvents = new LongAdder();
+    private final LongAdder cachedReads = new LongAdder();
+    private final LatencyHistogram queryLatency = new LatencyHistogram();
+
+    void eventReceived() {
+        receivedEvents.increment();
+    }
+
+    /**
+     * Records the raw events that haven't changed the theme, e.g. the ones merged by the coalescing.
+     */
+    void eventsSuppressed(int events) {
+        suppressedEvents.add(events);
+    }
+
+    void cachedRead() {
+        cachedReads.increment();
+    }
+
+    void queried(long durationNanos) {
+        queryLatency.record(durationNanos);
+    }
+
+    long receivedEvents() {
+        return receivedEvents.sum();
+    }
+
+    long suppressedEvents() {
+        return suppressedEvents.sum();
+    }
+
+    long cachedReads() {
+        return cachedReads.sum();
+    }
+
+    @NotNull
+    LatencyStatistics queryLatency() {
+        return queryLatency.snapshot();
+    }
+
+    /**
+     * @return the snapshot of the counters, together with the ones shared by every detector
+     */
+    @NotNull
+    DetectorMetrics snapshot(@NotNull ListenerDispatcher<?> listeners) {
+        return new DetectorMetrics(GlobalMetrics.spawnedProcesses(), GlobalMetrics.monitorStarts(),
+                GlobalMetrics.monitorRestarts(), cachedReads(), queryLatency(),
+                listeners.statistics(receivedEvents(), suppressedEvents()), listeners.listenerStatistics());
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * The health of the monitoring of an {@link OsThemeDetector}.
+ *
+ * @see OsThemeDetector#getMonitorHealth()
+ */
+public final class MonitorHealth {
+
+    public enum State {
+        /**
+         * The os isn't monitored, as there are no listeners.
+         */
+        STOPPED,
+        /**
+         * The os is monitored.
+         */
+        RUNNING,
+        /**
+         * The monitoring has failed and is about to be restarted; meanwhile the os is queried directly.
+         */
+        RESTARTING
+    }
+
+    private final State state;
+    private final long restarts;
+    private final String lastFailure;
+    private final long lastFailureTimeMillis;
+
+    MonitorHealth(@NotNull State state, long restarts, @Nullable String lastFailure, long lastFailureTimeMillis) {
+        this.state = state;
+        this.restarts = restarts;
+        this.lastFailure = lastFailure;
+        this.lastFailureTimeMillis = lastFailureTimeMillis;
+    }
+
+    @NotNull
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return {@code true} unless the monitoring is being restarted
+     */
+    public boolean isHealthy() {
+        return state != State.RESTARTING;
+    }
+
+    /**
+     * @return the number of times the monitoring has been restarted after a failure
+     */
+    public long getRestarts() {
+        return restarts;
+    }
+
+    /**
+     * @return the description of the last failure; {@code null} if the monitoring hasn't failed
+     */
+    @Nullable
+    public String getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * @return the time of the last failure in milliseconds since the epoch; {@code 0} if the monitoring hasn't failed
+     */
+    public long getLastFailureTimeMillis() {
+        return lastFailureTimeMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "MonitorHealth{state=" + state + ", restarts=" + restarts +
+                (lastFailure == null ? "" : ", lastFailure=" + lastFailure + " at " + lastFailureTimeMillis) + '}';
+    }
+}
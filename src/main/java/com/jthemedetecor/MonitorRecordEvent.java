@@ -0,0 +1,43 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Flight Recorder event of a record received from the {@code gsettings monitor} process.
+ */
+@Name("com.jthemedetecor.MonitorRecord")
+@Label("Monitor Record")
+@Description("A line received from the gsettings monitor process")
+@Category("jSystemThemeDetector")
+@StackTrace(false)
+final class MonitorRecordEvent extends jdk.jfr.Event {
+
+    @Label("Key")
+    String key;
+
+    @Label("Value")
+    String value;
+
+    @Label("Changed")
+    @Description("Whether the value differs from the previous one, so it is published")
+    boolean changed;
+}
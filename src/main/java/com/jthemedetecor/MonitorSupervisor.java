@@ -0,0 +1,107 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Restarts the monitoring of a detector after its loop has failed (e.g. the session bus connection has broken
+ * or a directory can't be watched anymore), with an exponential backoff. Until the restart the monitoring
+ * is stopped, so {@link OsThemeDetector#isDark()} queries the os instead of serving a state that isn't updated.
+ */
+final class MonitorSupervisor {
+
+    private static final Logger logger = LoggerFactory.getLogger(MonitorSupervisor.class);
+
+    static final long INITIAL_BACKOFF_MILLIS = 500;
+    static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    // a loop running at least this long is considered to have recovered, so the backoff starts over
+    static final long STABLE_RUN_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final OsThemeDetector detector;
+    private final AtomicLong restarts = new AtomicLong();
+
+    // guarded by the monitoring lock of the detector
+    private long backoffMillis = INITIAL_BACKOFF_MILLIS;
+    private ScheduledFuture<?> restartTask;
+    private volatile boolean restarting;
+    private volatile String lastFailure;
+    private volatile long lastFailureTimeMillis;
+
+    MonitorSupervisor(@NotNull OsThemeDetector detector) {
+        this.detector = detector;
+    }
+
+    /**
+     * @return a random delay of [backoff/2, backoff], so the restarts of many processes don't align
+     */
+    static long jitter(long backoffMillis) {
+        return backoffMillis / 2 + ThreadLocalRandom.current().nextLong(backoffMillis / 2 + 1);
+    }
+
+    /**
+     * Schedules the restart of the failed loop; called under the monitoring lock, after the monitoring has been stopped.
+     */
+    void scheduleRestart(@NotNull MonitorTask task) {
+        if (task.getRunNanos() >= STABLE_RUN_NANOS) {
+            backoffMillis = INITIAL_BACKOFF_MILLIS;
+        }
+        final long delayMillis = jitter(backoffMillis);
+        backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+        lastFailure = task.getFailure();
+        lastFailureTimeMillis = System.currentTimeMillis();
+        restarting = true;
+        logger.warn("{} has stopped ({}), restarting it in {} ms", task.getName(), lastFailure, delayMillis);
+        if (restartTask != null) {
+            restartTask.cancel(false);
+        }
+        // the restart queries the os, which mustn't block the timer thread
+        restartTask = DetectorExecution.scheduler().schedule(
+                () -> DetectorExecution.executor().execute(this::restart), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void restart() {
+        restarts.incrementAndGet();
+        GlobalMetrics.monitorRestarted();
+        restarting = false;
+        detector.restartMonitoring();
+    }
+
+    /**
+     * Cancels a pending restart, e.g. because the detector is closed.
+     */
+    void cancel() {
+        if (restartTask != null) {
+            restartTask.cancel(false);
+            restartTask = null;
+        }
+        restarting = false;
+    }
+
+    @NotNull
+    MonitorHealth health(boolean monitoring) {
+        final MonitorHealth.State state = restarting ? MonitorHealth.State.RESTARTING :
+                monitoring ? MonitorHealth.State.RUNNING : MonitorHealth.State.STOPPED;
+        return new MonitorHealth(state, restarts.get(), lastFailure, lastFailureTimeMillis);
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.jthemedetecor;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * The loop monitoring the os. It runs on the thread provided by {@link DetectorExecution}:
+ * a dedicated thread, a virtual thread or a thread of a caller-supplied executor.
+ * <p>
+ * It can be stopped like a thread: {@link #interrupt()} interrupts the thread running it,
+ * and the loop checks {@link #isInterrupted()}. A loop that ends because of an error reports it with
+ * {@link #failed(Throwable)}; the detector that has started it restarts it later, see {@link MonitorSupervisor}.
+ */
+abstract class MonitorTask implements Runnable {
+
+    private final String name;
+
+    private volatile boolean interrupted;
+    private boolean started;
+    private Thread runner;
+    private long startNanos;
+    private volatile long runNanos;
+    private volatile String failure;
+    private volatile Consumer<MonitorTask> failureHandler;
+
+    MonitorTask(@NotNull String name) {
+        this.name = name;
+    }
+
+    @NotNull
+    String getName() {
+        return name;
+    }
+
+    void start() {
+        DetectorExecution.start(this);
+    }
+
+    void interrupt() {
+        interrupted = true;
+        synchronized (this) {
+            if (runner != null) {
+                runner.interrupt();
+            }
+        }
+    }
+
+    boolean isInterrupted() {
+        return interrupted;
+    }
+
+    /**
+     * Records that the loop is about to end because of an error rather than an interruption.
+     */
+    void failed(@NotNull Throwable cause) {
+        failed(cause.toString());
+    }
+
+    /**
+     * Records that the loop is about to end because of an error rather than an interruption.
+     */
+    void failed(@NotNull String description) {
+        failure = description;
+    }
+
+    /**
+     * @return the error the loop has ended with; {@code null} if it hasn't failed
+     */
+    String getFailure() {
+        return failure;
+    }
+
+    /**
+     * @return the time the loop has run for, once it has ended
+     */
+    long getRunNanos() {
+        return runNanos;
+    }
+
+    /**
+     * Sets the handler notified when the loop ends with a failure without having been interrupted.
+     */
+    void onFailure(@NotNull Consumer<MonitorTask> failureHandler) {
+        this.failureHandler = failureHandler;
+    }
+
+    /**
+     * @return {@code true} if the loop has started running, whether it's still running or not
+     */
+    synchronized boolean hasStarted() {
+        return started;
+    }
+
+    /**
+     * @return {@code true} if the loop has been interrupted and isn't running
+     */
+    synchronized boolean isStopped() {
+        return interrupted && runner == null;
+    }
+
+    /**
+     * Waits until the loop isn't running; a loop that hasn't been started by the time it's interrupted never runs.
+     *
+     * @return {@code true} if the loop isn't running; {@code false} if the timeout has elapsed
+     */
+    synchronized boolean join(long timeoutNanos) throws InterruptedException {
+        final long deadline = System.nanoTime() + timeoutNanos;
+        while (runner != null) {
+            final long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return false;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+
+    /**
+     * Runs the loop on the calling thread, unless the task has been interrupted already or it has run
+     * on another thread, e.g. on a dedicated thread while it was queued in an executor.
+     */
+    final void execute() {
+        synchronized (this) {
+            if (interrupted || started) {
+                return;
+            }
+            started = true;
+            runner = Thread.currentThread();
+            startNanos = System.nanoTime();
+        }
+        try {
+            run();
+        } catch (RuntimeException e) {
+            // e.g. a failed native call; the loop is restarted like after a reported failure
+            if (!interrupted) {
+                failed(e);
+            }
+            throw e;
+        } finally {
+            synchronized (this) {
+                runNanos = System.nanoTime() - startNanos;
+                runner = null;
+                notifyAll();
+            }
+            if (interrupted) {
+                // the thread can be a pooled one, which mustn't keep the interrupt
+                Thread.interrupted();
+            } else if (failure != null && failureHandler != null) {
+                failureHandler.accept(this);
+            }
+        }
+    }
+}
@@ -21,6 +21,16 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import oshi.annotation.concurrent.ThreadSafe;
 
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 
 /**
@@ -28,13 +38,48 @@ import java.util.function.Consumer;
  *
  * @author Daniel Gyorffy
  */
-public abstract class OsThemeDetector {
+public abstract class OsThemeDetector implements AutoCloseable {
 
     private static final Logger logger = LoggerFactory.getLogger(OsThemeDetector.class);
 
+    /**
+     * The name of the MBean registered by {@link #registerMBean()}.
+     */
+    public static final String MBEAN_NAME = "com.jthemedetecor:type=OsThemeDetector";
+
+    private static final long WEAK_LISTENER_PURGE_PERIOD_SECONDS = 10;
+    private static final long CLOSE_TIMEOUT_MILLIS = 2000;
+
     private static volatile OsThemeDetector osThemeDetector;
+    private static boolean shutdownHookInstalled;
+
+    private final DetectorState state = new DetectorState(this::onStatePublished, this::settle);
+    private final ListenerDispatcher<Boolean> listeners = new ListenerDispatcher<>();
+    private final MetricsRecorder metrics = new MetricsRecorder();
+    private final AppearanceListeners appearanceListeners = new AppearanceListeners(this::appearanceMonitor);
+
+    // only set on the detector returned by getDetector(), if the startup cache is enabled
+    private volatile StartupCache startupCache;
+    private volatile ThemeDetectorProvider provider;
+    // true while the state read from the startup cache hasn't been revalidated
+    private volatile boolean startupStateUnverified;
+    // only set on the detectors of other sessions, see getDetector(SessionContext)
+    private volatile SessionContext session;
 
-    OsThemeDetector() {
+    // serializes the starting and stopping of the monitoring and the purge task
+    private final Object monitoringLock = new Object();
+    private ScheduledFuture<?> purgeTask;
+    // the monitoring is kept running without listeners, see start()
+    private volatile boolean started;
+    private volatile boolean closed;
+    // the loops started by the detector, joined by close()
+    private final Set<MonitorTask> monitorTasks = ConcurrentHashMap.newKeySet();
+    private final MonitorSupervisor supervisor = new MonitorSupervisor(this);
+
+    /**
+     * Constructor for the detectors of the {@link ThemeDetectorProvider}s.
+     */
+    protected OsThemeDetector() {
     }
 
     @NotNull
@@ -42,12 +87,13 @@ public abstract class OsThemeDetector {
     public static OsThemeDetector getDetector() {
         OsThemeDetector instance = osThemeDetector;
 
-        if (instance == null) {
+        if (instance == null || instance.closed) {
             synchronized (OsThemeDetector.class) {
                 instance = osThemeDetector;
 
-                if (instance == null) {
-                    osThemeDetector = instance = createDetector();
+                if (instance == null || instance.closed) {
+                    instance = DetectorFactory.create();
+                    osThemeDetector = instance;
                 }
             }
         }
@@ -55,68 +101,792 @@ public abstract class OsThemeDetector {
         return instance;
     }
 
-    private static OsThemeDetector createDetector() {
-        if (OsInfo.isWindows10OrLater()) {
-            logDetection("Windows 10", WindowsThemeDetector.class);
-            return new WindowsThemeDetector();
-        } else if (OsInfo.isGnome()) {
-            logDetection("Gnome", GnomeThemeDetector.class);
-            return new GnomeThemeDetector();
-        } else if (OsInfo.isMacOsMojaveOrLater()) {
-            logDetection("MacOS", MacOSThemeDetector.class);
-            return new MacOSThemeDetector();
-        } else {
-            logger.debug("Theme detection is not supported on the system: {} {}", OsInfo.getFamily(), OsInfo.getVersion());
-            logger.debug("Creating empty detector...");
-            return new EmptyDetector();
+    /**
+     * Returns the detector of a desktop session, e.g. of a remote desktop session served by the process.
+     * The detectors of the sessions are kept in a registry: a detector is created when its session is
+     * first asked for, and it is dropped once it's idle (no listener is registered) and it either hasn't been
+     * asked for during the idle timeout, or the registry exceeds its maximum size (the least recently used
+     * one goes first), see {@link #setSessionLimits(int, long, TimeUnit)}. A dropped detector isn't closed:
+     * it only releases the connections its queries keep open, and is handed out again while it's still held.
+     * <p>
+     * The monitoring of the sessions runs on the threads of {@link DetectorExecution}, like the monitoring
+     * of {@link #getDetector()}: every monitored session occupies a thread, which a bounded executor
+     * doesn't limit, see {@link DetectorExecution#useExecutor(java.util.concurrent.ExecutorService)}.
+     *
+     * @return the detector of {@link #getDetector()} for the session of the running process
+     */
+    @NotNull
+    @ThreadSafe
+    public static OsThemeDetector getDetector(@NotNull SessionContext session) {
+        if (session.isCurrent()) {
+            return getDetector();
         }
+        return SessionRegistry.getInstance().get(session);
     }
 
-    private static void logDetection(String desktop, Class<? extends OsThemeDetector> detectorClass) {
-        logger.debug("Supported Desktop detected: {}", desktop);
-        logger.debug("Creating {}...", detectorClass.getName());
+    /**
+     * Sets the limits of the registry of {@link #getDetector(SessionContext)}; by default at most
+     * {@value SessionRegistry#DEFAULT_MAX_SESSIONS} idle sessions are kept for 10 minutes.
+     *
+     * @param maxSessions the number of sessions above which the least recently used idle sessions are dropped
+     * @param idleTimeout the time after which an idle session that hasn't been asked for is dropped
+     */
+    @ThreadSafe
+    public static void setSessionLimits(int maxSessions, long idleTimeout, @NotNull TimeUnit unit) {
+        if (maxSessions < 1 || idleTimeout <= 0) {
+            throw new IllegalArgumentException("Invalid session limits: " + maxSessions + ", " + idleTimeout);
+        }
+        SessionRegistry.getInstance().setLimits(maxSessions, unit.toNanos(idleTimeout));
+    }
+
+    /**
+     * @return the detector of {@link #getDetector()} (closed or not); {@code null} if it hasn't been created yet
+     */
+    @Nullable
+    static OsThemeDetector existingDetector() {
+        return osThemeDetector;
     }
 
     /**
      * Returns that the os using a dark or a light theme.
+     * <p>
+     * While the detector is monitoring the os (e.g. a listener is registered), this only reads
+     * the last observed state; otherwise the os is queried. Right after a start from the startup cache,
+     * the cached theme is returned until it has been revalidated in the background.
      *
      * @return {@code true} if the os uses dark theme; {@code false} otherwise.
      */
     @ThreadSafe
-    public abstract boolean isDark();
+    public boolean isDark() {
+        final ThemeState current = state.current();
+        if (current != null && (isMonitoring() || startupStateUnverified)) {
+            metrics.cachedRead();
+            return current.isDark();
+        }
+        final DetectionEvent event = new DetectionEvent();
+        event.begin();
+        final long start = System.nanoTime();
+        // with listeners, only the monitor publishes, so the changes it catches up on after a failure are notified
+        final boolean dark = listeners.isEmpty() ? refreshState().isDark() : queryDark();
+        metrics.queried(System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.detector = getClass().getName();
+            event.dark = dark;
+            event.commit();
+        }
+        return dark;
+    }
+
+    /**
+     * Enables the startup cache: {@link #getDetector()} remembers the chosen detector and the last observed
+     * theme in {@code $XDG_CACHE_HOME/jSystemThemeDetector} (or {@code ~/.cache/jSystemThemeDetector}), and later
+     * processes in the same environment start from them right away, revalidating them in the background.
+     * It can also be enabled with the {@code jthemedetector.startupCache=true} system property.
+     * <p>
+     * It has to be called before the first {@link #getDetector()} call.
+     */
+    @ThreadSafe
+    public static void enableStartupCache() {
+        DetectorFactory.enableStartupCache();
+    }
+
+    /**
+     * Enables probing the providers in parallel: {@link #getDetector()} returns right away, and the first
+     * provider that answers the theme is used, even if a provider of higher priority is still probing
+     * (e.g. waiting for a slow session bus). The first {@link #isDark()} waits at most until the deadline;
+     * if no provider has answered by then, it returns {@code false} and the listeners are notified
+     * once the theme is known. It can also be enabled with the {@code jthemedetector.raceDeadlineMillis}
+     * system property.
+     * <p>
+     * It has to be called before the first {@link #getDetector()} call.
+     *
+     * @param deadline the time the first answer is awaited, counted from {@link #getDetector()}
+     */
+    @ThreadSafe
+    public static void enableBackendRacing(long deadline, @NotNull TimeUnit unit) {
+        if (deadline < 0) {
+            throw new IllegalArgumentException("The deadline mustn't be negative: " + deadline);
+        }
+        DetectorFactory.enableBackendRacing(unit.toNanos(deadline));
+    }
+
+    /**
+     * Enables sharing the monitoring between the JVMs of a user session (Linux only): of the JVMs with listeners,
+     * only the one holding a lock file under {@code $XDG_RUNTIME_DIR/jSystemThemeDetector} monitors the os
+     * (e.g. runs the {@code gsettings monitor} process), and publishes the theme in a memory-mapped file
+     * that the others read. When that JVM stops monitoring or exits, another one takes over.
+     * It can also be enabled with the {@code jthemedetector.sharedMonitoring=true} system property.
+     * <p>
+     * It has to be called before the first {@link #getDetector()} call.
+     */
+    @ThreadSafe
+    public static void enableSharedMonitoring() {
+        DetectorFactory.enableSharedMonitoring();
+    }
+
+    /**
+     * Returns the version of the last observed theme state. The version is increased every time
+     * the detector observes a theme change, so comparing two versions is a cheap way of
+     * checking whether the theme has changed in the meantime.
+     *
+     * @return the version of the state; {@code 0} if the theme hasn't been observed yet
+     */
+    @ThreadSafe
+    public long stateVersion() {
+        return state.version();
+    }
+
+    /**
+     * Returns that the os using a dark or a light theme without blocking the calling thread.
+     * If the state is maintained by the detector, the returned future is already completed;
+     * otherwise the os is queried on a shared background thread.
+     *
+     * @return the future result of {@link #isDark()}
+     */
+    @NotNull
+    @ThreadSafe
+    public CompletableFuture<Boolean> isDarkAsync() {
+        return isDarkAsync(DetectorExecution.executor());
+    }
+
+    /**
+     * Returns that the os using a dark or a light theme without blocking the calling thread.
+     *
+     * @param executor the executor that queries the os if the state isn't maintained by the detector
+     * @return the future result of {@link #isDark()}
+     */
+    @NotNull
+    @ThreadSafe
+    public CompletableFuture<Boolean> isDarkAsync(@NotNull Executor executor) {
+        final ThemeState current = state.current();
+        if (current != null && isMonitoring()) {
+            return CompletableFuture.completedFuture(current.isDark());
+        }
+        return CompletableFuture.supplyAsync(this::isDark, executor);
+    }
+
+    /**
+     * Returns the appearance settings of the desktop.
+     * <p>
+     * The attributes beyond the dark/light theme are read from GNOME's {@code org.gnome.desktop.interface}
+     * schema; on other systems they have their default values.
+     *
+     * @return the last observed snapshot while an appearance listener is registered;
+     * otherwise a freshly queried one
+     */
+    @NotNull
+    @ThreadSafe
+    public AppearanceSnapshot getAppearance() {
+        final GnomeInterfaceMonitor monitor = appearanceMonitor();
+        if (monitor != null) {
+            return monitor.current();
+        }
+        return new AppearanceSnapshot(isDark(), Collections.emptyMap());
+    }
+
+    /**
+     * Returns a publisher of the theme states. Every subscriber receives the current state first, then
+     * the changes, as its demand allows. If the theme changes more times than requested,
+     * only the latest state is delivered.
+     *
+     * @return the publisher; the subscriptions are set up on a shared background thread
+     */
+    @NotNull
+    @ThreadSafe
+    public Flow.Publisher<ThemeState> themeStates() {
+        return themeStates(DetectorExecution.executor());
+    }
+
+    /**
+     * Returns a publisher of the theme states, see {@link #themeStates()}.
+     *
+     * @param executor the executor setting up the subscriptions, which can involve querying the os
+     */
+    @NotNull
+    @ThreadSafe
+    public Flow.Publisher<ThemeState> themeStates(@NotNull Executor executor) {
+        return new ThemeStatePublisher(this, executor);
+    }
+
+    /**
+     * @return the last observed state; {@code null} if the theme hasn't been observed yet
+     */
+    @Nullable
+    ThemeState currentState() {
+        return state.current();
+    }
+
+    /**
+     * Queries the theme directly from the os.
+     *
+     * @return {@code true} if the os uses dark theme; {@code false} otherwise.
+     */
+    protected abstract boolean queryDark();
+
+    /**
+     * Queries the theme like {@link #queryDark()}, but fails instead of reporting a light theme
+     * when the os can't answer, e.g. so a broken backend doesn't win a race.
+     *
+     * @throws IOException if the theme can't be queried
+     */
+    boolean probeDark() throws IOException {
+        return queryDark();
+    }
+
+    /**
+     * @return {@code true} if the detector keeps its state up to date by itself
+     */
+    protected boolean isMonitoring() {
+        return false;
+    }
+
+    /**
+     * Queries the os and publishes the result as the current state.
+     */
+    @NotNull
+    protected ThemeState refreshState() {
+        return publishState(queryDark());
+    }
+
+    /**
+     * Publishes the given theme as the current state.
+     * A new version is only created if the theme differs from the current state.
+     *
+     * @return the state that is current after the publication
+     */
+    @NotNull
+    protected ThemeState publishState(boolean dark) {
+        return state.publish(dark);
+    }
+
+    /**
+     * Remembers a new state in the startup cache, which writes it in the background.
+     */
+    private void onStatePublished(@NotNull ThemeState published) {
+        final StartupCache cache = startupCache;
+        final ThemeDetectorProvider currentProvider = provider;
+        if (cache != null && currentProvider != null) {
+            cache.store(currentProvider, published.isDark());
+        }
+    }
+
+    /**
+     * Publishes the observed theme and notifies the listeners if it differs from the current state.
+     * Called by the monitors of the detectors.
+     */
+    protected void onThemeDetected(boolean dark) {
+        metrics.eventReceived();
+        state.offer(dark);
+    }
+
+    /**
+     * Publishes the settled theme of the given number of raw events.
+     */
+    private void settle(boolean dark, int events) {
+        logger.debug("Theme changed detection, dark: {}", dark);
+        final long lastVersion = stateVersion();
+        final ThemeState published = publishState(dark);
+        if (published.getVersion() != lastVersion) {
+            metrics.eventsSuppressed(events - 1);
+            if (listeners.purge()) {
+                updateMonitoring();
+            }
+            // a concurrent settle may dispatch an older state after this one, the listeners skip it
+            listeners.dispatch(published.isDark(), published.getVersion());
+        } else {
+            metrics.eventsSuppressed(events);
+        }
+    }
+
+    /**
+     * Records the provider that has turned out to be applicable after the detector was created.
+     */
+    void chooseProvider(@NotNull ThemeDetectorProvider provider) {
+        this.provider = provider;
+    }
+
+    /**
+     * @return the provider of the detector; {@code null} if it isn't known (yet)
+     */
+    @Nullable
+    ThemeDetectorProvider provider() {
+        return provider;
+    }
+
+    /**
+     * Sets the startup cache remembering the theme of the detector; {@code null} to stop remembering it.
+     */
+    void useStartupCache(@Nullable StartupCache cache) {
+        this.startupCache = cache;
+    }
+
+    /**
+     * While the state read from the startup cache is unverified, {@link #isDark()} returns it without querying the os.
+     */
+    void setStartupStateUnverified(boolean unverified) {
+        this.startupStateUnverified = unverified;
+    }
+
+    /**
+     * Makes the detector the one of another session, see {@link #getDetector(SessionContext)}.
+     */
+    void bindSession(@NotNull SessionContext session) {
+        this.session = session;
+    }
+
+    /**
+     * @return the counters of the detector
+     */
+    @NotNull
+    MetricsRecorder metrics() {
+        return metrics;
+    }
+
+    /**
+     * Releases the resources of the platform; called by {@link #close()} once the monitoring has stopped,
+     * and by {@link #releaseIfIdle()}, after which the detector acquires them again when it needs them.
+     */
+    void release() {
+    }
+
+    /**
+     * Releases the resources kept for the queries (e.g. a connection to the session bus) unless the detector
+     * is in use; unlike {@link #close()}, the detector stays usable.
+     *
+     * @return {@code false} if the detector is in use or closed
+     */
+    boolean releaseIfIdle() {
+        synchronized (monitoringLock) {
+            if (closed || isInUse()) {
+                return false;
+            }
+            release();
+            return true;
+        }
+    }
+
+    /**
+     * @return the monitor of the appearance attributes; {@code null} if they aren't available
+     */
+    @Nullable
+    GnomeInterfaceMonitor appearanceMonitor() {
+        return session == null && OsInfo.isGnome() ? GnomeInterfaceMonitor.getInstance() : null;
+    }
+
+    /**
+     * @return {@code true} if the detector is started or a listener of the theme or of an appearance attribute
+     * is registered
+     */
+    boolean isInUse() {
+        return started || !listeners.isEmpty() || !appearanceListeners.isEmpty();
+    }
+
+    /**
+     * @return {@code true} if no listener notification is pending or running
+     */
+    boolean listenersIdle() {
+        return listeners.isIdle();
+    }
+
+    /**
+     * Starts a loop monitoring the os; {@link #close()} interrupts it and waits for its end.
+     */
+    void startMonitorTask(@NotNull MonitorTask task) {
+        if (closed) {
+            throw new IllegalStateException("The detector is closed");
+        }
+        monitorTasks.removeIf(MonitorTask::isStopped);
+        monitorTasks.add(task);
+        task.onFailure(this::onMonitorTaskFailed);
+        task.start();
+    }
+
+    /**
+     * Stops the monitoring after its loop has failed, so the os is queried until the supervisor restarts it.
+     */
+    private void onMonitorTaskFailed(@NotNull MonitorTask task) {
+        synchronized (monitoringLock) {
+            if (closed || !monitorTasks.remove(task)) {
+                return;
+            }
+            stopMonitoring();
+            supervisor.scheduleRestart(task);
+        }
+    }
+
+    /**
+     * Restarts the failed monitoring, if it's still needed. The changes missed in the meantime are notified first.
+     */
+    void restartMonitoring() {
+        if (closed) {
+            return;
+        }
+        try {
+            // not coalesced, as the restarted loop publishes the current state right away
+            metrics.eventReceived();
+            settle(queryDark(), 1);
+        } catch (RuntimeException e) {
+            logger.error("Couldn't query the theme before restarting the monitoring", e);
+        }
+        updateMonitoring();
+    }
+
+    /**
+     * Starts monitoring the os, if it isn't monitored yet. Called when the first listener is registered.
+     */
+    protected void startMonitoring() {
+    }
+
+    /**
+     * Stops monitoring the os. Called when the last listener is removed.
+     */
+    protected void stopMonitoring() {
+    }
 
     /**
      * Registers a {@link Consumer} that will listen to a theme-change.
+     * The listener is notified on a shared background thread.
      *
      * @param darkThemeListener the {@link Consumer} that accepts a {@link Boolean} that represents
      *                          that the os using a dark theme or not
      */
     @ThreadSafe
-    public abstract void registerListener(@NotNull Consumer<Boolean> darkThemeListener);
+    public void registerListener(@NotNull Consumer<Boolean> darkThemeListener) {
+        registerListener(darkThemeListener, DetectorExecution.executor());
+    }
 
     /**
-     * Removes the listener.
+     * Registers a {@link Consumer} that will listen to a theme-change, notified through the given executor.
+     * <p>
+     * A listener is never notified concurrently with itself. If the theme changes while the listener
+     * is still processing a previous change, only the latest theme is delivered to it afterwards.
+     * Slow listeners don't delay the other listeners or the detection.
+     *
+     * @param darkThemeListener the {@link Consumer} that accepts a {@link Boolean} that represents
+     *                          that the os using a dark theme or not
+     * @param executor          the executor running the notifications of the listener,
+     *                          e.g. {@code Platform::runLater} or {@code SwingUtilities::invokeLater}
      */
     @ThreadSafe
-    public abstract void removeListener(@Nullable Consumer<Boolean> darkThemeListener);
+    public void registerListener(@NotNull Consumer<Boolean> darkThemeListener, @NotNull Executor executor) {
+        Objects.requireNonNull(darkThemeListener);
+        Objects.requireNonNull(executor);
+        ensureOpen();
+        if (listeners.add(darkThemeListener, executor)) {
+            updateMonitoring();
+        }
+    }
 
+    /**
+     * Registers a {@link Consumer} that will listen to a theme-change, held through a weak reference.
+     * The listener is notified on a shared background thread.
+     *
+     * @see #registerWeakListener(Consumer, Executor)
+     */
     @ThreadSafe
-    public static boolean isSupported() {
-        return OsInfo.isWindows10OrLater() || OsInfo.isMacOsMojaveOrLater() || OsInfo.isGnome();
+    public void registerWeakListener(@NotNull Consumer<Boolean> darkThemeListener) {
+        registerWeakListener(darkThemeListener, DetectorExecution.executor());
+    }
+
+    /**
+     * Registers a {@link Consumer} that will listen to a theme-change, held through a weak reference:
+     * the detector doesn't keep the listener (and the objects it refers to) from being garbage collected.
+     * A collected listener is removed automatically, and the monitoring stops when no listener is left.
+     * <p>
+     * The caller has to keep a strong reference to the listener itself (e.g. in a field of the window
+     * it belongs to); a lambda that is only passed to this method can be collected right away.
+     *
+     * @see #registerListener(Consumer, Executor)
+     */
+    @ThreadSafe
+    public void registerWeakListener(@NotNull Consumer<Boolean> darkThemeListener, @NotNull Executor executor) {
+        Objects.requireNonNull(darkThemeListener);
+        Objects.requireNonNull(executor);
+        ensureOpen();
+        if (listeners.addWeak(darkThemeListener, executor)) {
+            updateMonitoring();
+        }
+        synchronized (monitoringLock) {
+            if (purgeTask == null && !closed) {
+                purgeTask = DetectorExecution.scheduler().scheduleWithFixedDelay(this::purgeCollectedListeners,
+                        WEAK_LISTENER_PURGE_PERIOD_SECONDS, WEAK_LISTENER_PURGE_PERIOD_SECONDS, TimeUnit.SECONDS);
+            }
+        }
     }
 
-    private static final class EmptyDetector extends OsThemeDetector {
-        @Override
-        public boolean isDark() {
-            return false;
+    /**
+     * Drops the collected weak listeners even if the theme doesn't change, so the monitoring
+     * can stop without waiting for the next notification.
+     */
+    private void purgeCollectedListeners() {
+        if (listeners.purge()) {
+            updateMonitoring();
+        }
+        synchronized (monitoringLock) {
+            if (purgeTask != null && !listeners.hasWeakListeners()) {
+                purgeTask.cancel(false);
+                purgeTask = null;
+            }
+        }
+    }
+
+    /**
+     * Removes the listener; has no effect if it isn't registered.
+     */
+    @ThreadSafe
+    public void removeListener(@Nullable Consumer<Boolean> darkThemeListener) {
+        if (listeners.remove(darkThemeListener)) {
+            updateMonitoring();
         }
+    }
 
-        @Override
-        public void registerListener(@NotNull Consumer<Boolean> darkThemeListener) {
+    /**
+     * Starts or stops the monitoring depending on whether there are listeners. Called after the registry
+     * has become empty or non-empty; as the check happens under the lock, the last call always sees
+     * the final state of the registry, even if registrations and removals race.
+     */
+    private void updateMonitoring() {
+        synchronized (monitoringLock) {
+            if (closed) {
+                // a listener registered while the detector was being closed
+                listeners.clear();
+            } else if (listeners.isEmpty() && !started) {
+                stopMonitoring();
+            } else {
+                startMonitoring();
+            }
         }
+    }
+
+    /**
+     * Registers a {@link Consumer} that will listen to the changes of an appearance attribute.
+     * The listener is notified on a shared background thread.
+     *
+     * @see #registerListener(AppearanceAttribute, Consumer, Executor)
+     */
+    @ThreadSafe
+    public <T> void registerListener(@NotNull AppearanceAttribute<T> attribute, @NotNull Consumer<? super T> listener) {
+        registerListener(attribute, listener, DetectorExecution.executor());
+    }
 
-        @Override
-        public void removeListener(@Nullable Consumer<Boolean> darkThemeListener) {
+    /**
+     * Registers a {@link Consumer} that will listen to the changes of an appearance attribute,
+     * notified through the given executor. The listener is only notified if the value of its attribute
+     * changes; on systems other than GNOME it is never notified.
+     * <p>
+     * The attributes share one monitoring process, regardless of how many of them are listened to.
+     *
+     * @param attribute the attribute to listen to, e.g. {@link AppearanceAttribute#ACCENT_COLOR}
+     * @param listener  the {@link Consumer} that accepts the new value of the attribute
+     * @param executor  the executor running the notifications of the listener
+     */
+    @ThreadSafe
+    public synchronized <T> void registerListener(@NotNull AppearanceAttribute<T> attribute,
+                                                  @NotNull Consumer<? super T> listener,
+                                                  @NotNull Executor executor) {
+        Objects.requireNonNull(attribute);
+        Objects.requireNonNull(listener);
+        Objects.requireNonNull(executor);
+        ensureOpen();
+        appearanceListeners.add(attribute, listener, executor);
+    }
+
+    /**
+     * Removes the listener of the appearance attribute; has no effect if it isn't registered.
+     */
+    @ThreadSafe
+    public synchronized void removeListener(@NotNull AppearanceAttribute<?> attribute, @Nullable Consumer<?> listener) {
+        appearanceListeners.remove(Objects.requireNonNull(attribute), listener);
+    }
+
+    /**
+     * Starts monitoring the os even if no listener is registered, so {@link #isDark()} reads the observed
+     * state instead of querying the os. The monitoring runs until {@link #stop()} or {@link #close()}.
+     *
+     * @throws IllegalStateException if the detector is closed
+     */
+    @ThreadSafe
+    public void start() {
+        ensureOpen();
+        started = true;
+        updateMonitoring();
+    }
+
+    /**
+     * Reverts {@link #start()}: the monitoring goes on only while listeners are registered.
+     */
+    @ThreadSafe
+    public void stop() {
+        started = false;
+        updateMonitoring();
+    }
+
+    /**
+     * Closes the detector: removes every listener, stops the monitoring and releases the resources of the
+     * platform (e.g. the observers of the os and the connections to the session bus). The monitoring threads
+     * are awaited and the child processes destroyed for at most {@value #CLOSE_TIMEOUT_MILLIS} ms.
+     * <p>
+     * Afterwards no listener can be registered, but {@link #isDark()} still queries the os, and
+     * {@link #getDetector()} returns a new detector. Closing a closed detector has no effect.
+     */
+    @Override
+    @ThreadSafe
+    public void close() {
+        synchronized (monitoringLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            started = false;
+            listeners.clear();
+            stopMonitoring();
+            supervisor.cancel();
+            if (purgeTask != null) {
+                purgeTask.cancel(false);
+                purgeTask = null;
+            }
+        }
+        appearanceListeners.clear();
+        release();
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(CLOSE_TIMEOUT_MILLIS);
+        try {
+            boolean stopped = true;
+            for (MonitorTask task : monitorTasks) {
+                task.interrupt();
+                stopped &= task.join(deadline - System.nanoTime());
+            }
+            monitorTasks.clear();
+            final GnomeInterfaceMonitor monitor = appearanceMonitor();
+            if (monitor != null) {
+                stopped &= monitor.awaitStopped(deadline - System.nanoTime());
+            }
+            if (!stopped) {
+                logger.warn("The monitoring of {} hasn't stopped in {} ms", getClass().getName(), CLOSE_TIMEOUT_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return {@code true} if the detector has been closed
+     */
+    @ThreadSafe
+    public boolean isClosed() {
+        return closed;
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("The detector is closed");
+        }
+    }
+
+    /**
+     * Closes the detector of {@link #getDetector()} and the detectors of the sessions when the JVM shuts down,
+     * so their child processes don't outlive it. Calling it again has no effect.
+     */
+    @ThreadSafe
+    public static synchronized void closeOnShutdown() {
+        if (!shutdownHookInstalled) {
+            Runtime.getRuntime().addShutdownHook(new Thread(OsThemeDetector::closeAll, "Theme Detector Shutdown Thread"));
+            shutdownHookInstalled = true;
+        }
+    }
+
+    private static void closeAll() {
+        final OsThemeDetector instance = osThemeDetector;
+        if (instance != null) {
+            instance.close();
+        }
+        SessionRegistry.getInstance().closeAll();
+    }
+
+    /**
+     * Sets the time after which a listener notification is considered late.
+     * A late listener doesn't block the others, but its notifications are coalesced until it returns.
+     */
+    @ThreadSafe
+    public void setListenerTimeout(long timeout, @NotNull TimeUnit unit) {
+        listeners.setTimeout(timeout, unit);
+    }
+
+    /**
+     * Sets the window in which the raw change events of the os are merged into one settled theme
+     * before the listeners are notified. The window starts with the first event of a burst.
+     * The default is 50 milliseconds; {@code 0} disables the coalescing.
+     */
+    @ThreadSafe
+    public void setCoalescingWindow(long window, @NotNull TimeUnit unit) {
+        state.setCoalescingWindow(unit.toNanos(window));
+    }
+
+    /**
+     * @return the counters of the change events and the listener notifications
+     */
+    @NotNull
+    @ThreadSafe
+    public DispatchStatistics getDispatchStatistics() {
+        return listeners.statistics(metrics.receivedEvents(), metrics.suppressedEvents());
+    }
+
+    /**
+     * Returns the health of the monitoring, which runs while there are listeners. A failed monitoring
+     * (e.g. a crashed helper process) is restarted with a backoff; meanwhile {@link #isDark()} queries the os.
+     *
+     * @return the state of the monitoring and its failures
+     */
+    @NotNull
+    @ThreadSafe
+    public MonitorHealth getMonitorHealth() {
+        return supervisor.health(isMonitoring());
+    }
+
+    /**
+     * Returns the metrics of the detector. They are recorded all the time, except the timings of the listeners,
+     * see {@link #enableListenerMetrics()}; the snapshot itself is taken without blocking the detection.
+     *
+     * @return the processes spawned, the latency of the os queries and the time spent in the listeners
+     */
+    @NotNull
+    @ThreadSafe
+    public DetectorMetrics getMetrics() {
+        return metrics.snapshot(listeners);
+    }
+
+    /**
+     * Records the delivery latency and the duration of every listener notification, see
+     * {@link DetectorMetrics#getListenerStatistics()}. They're off by default, as they make a notification about
+     * 1.6 times as expensive (a clock read and two histogram updates per listener). They can also be enabled
+     * with the {@code jthemedetector.listenerMetrics=true} system property, and are by {@link #registerMBean()}.
+     */
+    @ThreadSafe
+    public static void enableListenerMetrics() {
+        GlobalMetrics.enableListenerMetrics();
+    }
+
+    /**
+     * Registers the metrics of the detector returned by {@link #getDetector()} in the platform MBean server
+     * as {@value #MBEAN_NAME}, see {@link OsThemeDetectorMXBean}, and enables {@link #enableListenerMetrics()}.
+     * The MBean looks the detector up on every read, so it reports the new detector once the old one is closed.
+     * Calling it again has no effect.
+     *
+     * @return {@code true} if the MBean is registered
+     */
+    @ThreadSafe
+    public static boolean registerMBean() {
+        GlobalMetrics.enableListenerMetrics();
+        return DetectorMBean.register();
+    }
+
+    @ThreadSafe
+    public static boolean isSupported() {
+        // the detector of a provider is only created if the provider is (or was, when cached) applicable
+        final OsThemeDetector instance = osThemeDetector;
+        if (instance != null && instance.provider != null) {
+            return true;
         }
+        return DetectorFactory.isSupported();
     }
 }
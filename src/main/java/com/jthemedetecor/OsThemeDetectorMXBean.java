@@ -0,0 +1,93 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import java.util.List;
+
+/**
+ * The management interface of the metrics of an {@link OsThemeDetector}, registered by
+ * {@link OsThemeDetector#registerMBean()}.
+ *
+ * @see DetectorMetrics
+ */
+public interface OsThemeDetectorMXBean {
+
+    /**
+     * @return the class name of the detector used on the system; {@code null} if it hasn't been created yet
+     */
+    String getDetectorType();
+
+    /**
+     * @return the last observed theme, see {@link OsThemeDetector#isDark()}; {@code false} if it hasn't been
+     * observed yet. Reading it doesn't query the os.
+     */
+    boolean isDark();
+
+    /**
+     * @return the version of the theme state, see {@link OsThemeDetector#stateVersion()}
+     */
+    long getStateVersion();
+
+    /**
+     * @see OsThemeDetector#getMonitorHealth()
+     */
+    MonitorHealth getMonitorHealth();
+
+    /**
+     * @see DetectorMetrics#getSpawnedProcesses()
+     */
+    long getSpawnedProcesses();
+
+    /**
+     * @see DetectorMetrics#getMonitorStarts()
+     */
+    long getMonitorStarts();
+
+    /**
+     * @see DetectorMetrics#getMonitorRestarts()
+     */
+    long getMonitorRestarts();
+
+    /**
+     * @see DetectorMetrics#getCachedReads()
+     */
+    long getCachedReads();
+
+    /**
+     * @see DetectorMetrics#getQueryLatency()
+     */
+    LatencyStatistics getQueryLatency();
+
+    /**
+     * @see DispatchStatistics#getReceivedEvents()
+     */
+    long getReceivedEvents();
+
+    /**
+     * @see DispatchStatistics#getSuppressedEvents()
+     */
+    long getSuppressedEvents();
+
+    /**
+     * @return the counters of the change events and the listener notifications
+     */
+    DispatchStatistics getDispatchStatistics();
+
+    /**
+     * @see DetectorMetrics#getListenerStatistics()
+     */
+    List<ListenerStatistics> getListenerStatistics();
+}
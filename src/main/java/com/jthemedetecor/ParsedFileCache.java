@@ -0,0 +1,88 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.jthemedetecor;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+/**
+ * The content parsed from a file, which is only parsed again if the file has been modified or replaced
+ * since, according to its attributes.
+ */
+final class ParsedFileCache<T> {
+
+    /**
+     * Parses the content of a file.
+     */
+    interface Parser<T> {
+        @NotNull
+        T parse(@NotNull Path file) throws IOException;
+    }
+
+    private final Path file;
+    private final Parser<T> parser;
+
+    private volatile Parsed<T> parsed;
+
+    ParsedFileCache(@NotNull Path file, @NotNull Parser<T> parser) {
+        this.file = file;
+        this.parser = parser;
+    }
+
+    /**
+     * Returns the parsed content.
+     *
+     * @param revalidate if {@code true}, the file is parsed again if it has changed since it was parsed;
+     *                   otherwise it is only parsed if it hasn't been yet
+     */
+    @NotNull
+    T get(boolean revalidate) throws IOException {
+        Parsed<T> current = parsed;
+        if (current == null || revalidate) {
+            final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (current == null || !current.isParsedFrom(attributes)) {
+                current = new Parsed<>(parser.parse(file), attributes);
+                parsed = current;
+            }
+        }
+        return current.content;
+    }
+
+    /**
+     * Parsed content together with the attributes of the file it has been parsed from.
+     */
+    private static final class Parsed<T> {
+        private final T content;
+        private final Object fileKey;
+        private final long lastModified;
+        private final long size;
+
+        Parsed(T content, BasicFileAttributes attributes) {
+            this.content = content;
+            this.fileKey = attributes.fileKey();
+            this.lastModified = attributes.lastModifiedTime().toMillis();
+            this.size = attributes.size();
+        }
+
+        boolean isParsedFrom(BasicFileAttributes attributes) {
+            return fileKey != null && fileKey.equals(attributes.fileKey()) &&
+                    lastModified == attributes.lastModifiedTime().toMillis() && size == attributes.size();
+        }
+    }
+}
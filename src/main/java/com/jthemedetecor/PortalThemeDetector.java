@@ -0,0 +1,242 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.jthemedetecor;
+
+import com.jthemedetecor.dbus.DBusConnection;
+import com.jthemedetecor.dbus.DBusMessage;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+
+/**
+ * Determines the dark/light theme on a Linux system through the <i>XDG Desktop Portal</i>
+ * ({@code org.freedesktop.appearance color-scheme}), talking to the session bus directly.
+ * Requires Java 16 or later for the Unix-domain socket support.
+ */
+class PortalThemeDetector extends OsThemeDetector {
+
+    private static final Logger logger = LoggerFactory.getLogger(PortalThemeDetector.class);
+
+    static final String PORTAL_NAME = "org.freedesktop.portal.Desktop";
+    static final String PORTAL_PATH = "/org/freedesktop/portal/desktop";
+    static final String SETTINGS_INTERFACE = "org.freedesktop.portal.Settings";
+    static final String APPEARANCE_NAMESPACE = "org.freedesktop.appearance";
+    static final String COLOR_SCHEME_KEY = "color-scheme";
+
+    private static final String SETTING_CHANGED_SIGNAL = "SettingChanged";
+    private static final String SETTING_CHANGED_RULE = "type='signal',interface='" + SETTINGS_INTERFACE + "'," +
+            "member='" + SETTING_CHANGED_SIGNAL + "',path='" + PORTAL_PATH + "'," +
+            "arg0='" + APPEARANCE_NAMESPACE + "',arg1='" + COLOR_SCHEME_KEY + "'";
+
+    // 0: no preference, 1: prefer dark appearance, 2: prefer light appearance
+    private static final long PREFER_DARK = 1;
+    private static final long TIMEOUT_MILLIS = 2000;
+
+    private final String busAddress;
+    private final Object queryLock = new Object();
+
+    private DBusConnection queryConnection;
+    private volatile DetectorThread detectorThread;
+
+    /**
+     * @param busAddress the address of the session bus, e.g. of another session
+     */
+    PortalThemeDetector(@Nullable String busAddress) {
+        this.busAddress = busAddress;
+    }
+
+    /**
+     * Only checks the socket of the session bus, without connecting to it; whether the portal provides
+     * the color scheme is checked by {@link #connect(String)}.
+     *
+     * @return {@code true} if the session bus can be connected to
+     */
+    static boolean isAvailable() {
+        return isAvailable(System.getenv(DBusConnection.SESSION_BUS_ADDRESS_VARIABLE));
+    }
+
+    static boolean isAvailable(@Nullable String busAddress) {
+        return DBusConnection.isAvailable(busAddress);
+    }
+
+    @NotNull
+    static PortalThemeDetector connect() {
+        return connect(System.getenv(DBusConnection.SESSION_BUS_ADDRESS_VARIABLE));
+    }
+
+    /**
+     * Creates the detector and reads the color scheme once, over the connection its queries keep.
+     *
+     * @throws IllegalStateException if the portal can't be reached or doesn't provide the color scheme
+     */
+    @NotNull
+    static PortalThemeDetector connect(@Nullable String busAddress) {
+        final PortalThemeDetector detector = new PortalThemeDetector(busAddress);
+        try {
+            detector.probeDark();
+            return detector;
+        } catch (IOException | RuntimeException e) {
+            detector.close();
+            throw new IllegalStateException("The desktop portal doesn't provide the color scheme", e);
+        }
+    }
+
+    @Override
+    protected boolean queryDark() {
+        try {
+            return probeDark();
+        } catch (IOException | RuntimeException e) {
+            logger.error("Couldn't read the color scheme from the desktop portal", e);
+        }
+        return false;
+    }
+
+    @Override
+    boolean probeDark() throws IOException {
+        synchronized (queryLock) {
+            try {
+                if (queryConnection == null) {
+                    queryConnection = DBusConnection.open(busAddress, TIMEOUT_MILLIS);
+                }
+                return isDarkColorScheme(readColorScheme(queryConnection));
+            } catch (IOException | RuntimeException e) {
+                closeQueryConnection();
+                throw e;
+            } finally {
+                // a closed detector doesn't keep the connection
+                if (isClosed()) {
+                    closeQueryConnection();
+                }
+            }
+        }
+    }
+
+    private void closeQueryConnection() {
+        try {
+            if (queryConnection != null) {
+                queryConnection.close();
+            }
+        } catch (IOException e) {
+            logger.debug("Couldn't close the D-Bus connection", e);
+        } finally {
+            queryConnection = null;
+        }
+    }
+
+    @Override
+    void release() {
+        synchronized (queryLock) {
+            closeQueryConnection();
+        }
+    }
+
+    @Override
+    protected boolean isMonitoring() {
+        return detectorThread != null;
+    }
+
+    private static long readColorScheme(@NotNull DBusConnection connection) throws IOException {
+        final DBusMessage reply = connection.call(DBusMessage.methodCall(
+                PORTAL_NAME, PORTAL_PATH, SETTINGS_INTERFACE, "Read", "ss",
+                APPEARANCE_NAMESPACE, COLOR_SCHEME_KEY), TIMEOUT_MILLIS);
+        return colorSchemeValue(reply.getBody().get(0));
+    }
+
+    private static long colorSchemeValue(Object value) throws IOException {
+        // Read wraps the value into a further variant
+        final Object unwrapped = value instanceof DBusMessage.Variant ? ((DBusMessage.Variant) value).unwrap() : value;
+        if (!(unwrapped instanceof Number)) {
+            throw new IOException("Unexpected color-scheme value: " + unwrapped);
+        }
+        return ((Number) unwrapped).longValue();
+    }
+
+    private static boolean isDarkColorScheme(long colorScheme) {
+        return colorScheme == PREFER_DARK;
+    }
+
+    @Override
+    protected void startMonitoring() {
+        final DetectorThread currentDetectorThread = detectorThread;
+        if (currentDetectorThread == null || currentDetectorThread.isInterrupted()) {
+            final DetectorThread newDetectorThread = new DetectorThread(this);
+            this.detectorThread = newDetectorThread;
+            startMonitorTask(newDetectorThread);
+        }
+    }
+
+    @Override
+    protected void stopMonitoring() {
+        final DetectorThread currentDetectorThread = detectorThread;
+        if (currentDetectorThread != null) {
+            currentDetectorThread.interrupt();
+            this.detectorThread = null;
+        }
+    }
+
+    /**
+     * Thread implementation for receiving the {@code SettingChanged} signals of the portal
+     */
+    private static final class DetectorThread extends MonitorTask {
+
+        private final PortalThemeDetector detector;
+
+        DetectorThread(@NotNull PortalThemeDetector detector) {
+            super("Portal Theme Detector Thread");
+            this.detector = detector;
+            detector.refreshState();
+        }
+
+        @Override
+        public void run() {
+            try (DBusConnection connection = DBusConnection.open(detector.busAddress, TIMEOUT_MILLIS)) {
+                connection.addMatch(SETTING_CHANGED_RULE, TIMEOUT_MILLIS);
+                // the theme could have changed before the subscription took effect
+                onColorScheme(readColorScheme(connection));
+                while (!this.isInterrupted()) {
+                    final DBusMessage message = connection.receive(0);
+                    if (isColorSchemeChange(message)) {
+                        onColorScheme(colorSchemeValue(message.getBody().get(2)));
+                    }
+                }
+            } catch (InterruptedIOException e) {
+                logger.debug("ThemeDetectorThread has been interrupted!");
+            } catch (IOException | RuntimeException e) {
+                logger.error("Couldn't monitor the desktop portal ", e);
+                failed(e);
+            }
+        }
+
+        private boolean isColorSchemeChange(DBusMessage message) throws IOException {
+            if (message.getType() != DBusMessage.SIGNAL ||
+                    !SETTINGS_INTERFACE.equals(message.getInterface()) ||
+                    !SETTING_CHANGED_SIGNAL.equals(message.getMember()) ||
+                    !"ssv".equals(message.getSignature())) {
+                return false;
+            }
+            final List<Object> body = message.getBody();
+            return APPEARANCE_NAMESPACE.equals(body.get(0)) && COLOR_SCHEME_KEY.equals(body.get(1));
+        }
+
+        private void onColorScheme(long colorScheme) {
+            detector.onThemeDetected(isDarkColorScheme(colorScheme));
+        }
+    }
+}
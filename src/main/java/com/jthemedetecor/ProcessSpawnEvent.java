@@ -0,0 +1,48 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * Flight Recorder event of a child process, spanning from its start to its exit.
+ */
+@Name("com.jthemedetecor.ProcessSpawn")
+@Label("Process Spawn")
+@Description("A child process started by the theme detection, committed when it exits")
+@Category("jSystemThemeDetector")
+@StackTrace(false)
+final class ProcessSpawnEvent extends jdk.jfr.Event {
+
+    @Label("Command")
+    String command;
+
+    @Label("Process Id")
+    long pid;
+
+    @Label("Start Time")
+    @Description("The time it took to start the process")
+    @Timespan
+    long startDuration;
+
+    @Label("Exit Code")
+    int exitCode;
+}
@@ -0,0 +1,225 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Probes the providers in parallel and delegates to the detector of the first one that answers the theme
+ * (see {@link OsThemeDetector#probeDark()}; a detector that can't query the os doesn't answer),
+ * instead of probing them one after the other and querying the chosen one afterwards.
+ * <p>
+ * The first answer is awaited until the deadline (counted from the start of the race); if no provider
+ * has answered by then, the theme is reported as light until one does. The losing probes are cancelled,
+ * and the detectors they created are closed.
+ */
+final class RacingThemeDetector extends OsThemeDetector {
+
+    private static final Logger logger = LoggerFactory.getLogger(RacingThemeDetector.class);
+
+    private final long deadline;
+    // completed with the winner, or with null if no provider is applicable
+    private final CompletableFuture<Candidate> race = new CompletableFuture<>();
+    private final List<FutureTask<Void>> probes = new ArrayList<>();
+    private final Consumer<Boolean> forwarder = this::onThemeDetected;
+    // the missed deadline is only reported once, not by every query until a provider answers
+    private final AtomicBoolean deadlineMissed = new AtomicBoolean();
+
+    private final Object delegateLock = new Object();
+    private volatile Candidate winner;
+    private boolean monitoringRequested;
+    private volatile boolean assumedLight;
+
+    RacingThemeDetector(@NotNull List<ThemeDetectorProvider> providers, long deadline, @NotNull TimeUnit unit) {
+        this.deadline = System.nanoTime() + unit.toNanos(deadline);
+        final AtomicInteger remaining = new AtomicInteger(providers.size());
+        for (int i = 0; i < providers.size(); i++) {
+            final ThemeDetectorProvider provider = providers.get(i);
+            final int index = i;
+            probes.add(new FutureTask<>(() -> {
+                try {
+                    probe(provider, index);
+                } finally {
+                    if (remaining.decrementAndGet() == 0) {
+                        race.complete(null);
+                    }
+                }
+                return null;
+            }));
+        }
+        if (providers.isEmpty()) {
+            race.complete(null);
+        }
+        for (FutureTask<Void> probe : probes) {
+            DetectorExecution.executor().execute(probe);
+        }
+    }
+
+    private void probe(ThemeDetectorProvider provider, int index) {
+        OsThemeDetector detector = null;
+        try {
+            if (!provider.isApplicable() || race.isDone()) {
+                return;
+            }
+            detector = provider.create();
+            // only a real answer wins, a backend that can't answer mustn't win with a light theme
+            final Candidate candidate = new Candidate(provider, detector, detector.probeDark());
+            if (race.complete(candidate)) {
+                detector = null;
+                win(candidate, index);
+            }
+        } catch (IOException | RuntimeException | LinkageError e) {
+            if (race.isDone()) {
+                logger.debug("The cancelled probe of {} has failed", provider, e);
+            } else {
+                logger.error("Couldn't probe the theme detector provider {}", provider, e);
+            }
+        } finally {
+            if (detector != null) {
+                detector.close();
+            }
+        }
+    }
+
+    private void win(Candidate candidate, int index) {
+        logger.debug("{} has answered first: {}", candidate.provider, candidate.detector.getClass().getName());
+        // the probe of the winner is still running on this thread, which mustn't be interrupted
+        for (int i = 0; i < probes.size(); i++) {
+            if (i != index) {
+                probes.get(i).cancel(true);
+            }
+        }
+        // the delegate reports every change right away, this detector coalesces them
+        candidate.detector.setCoalescingWindow(0, TimeUnit.MILLISECONDS);
+        synchronized (delegateLock) {
+            winner = candidate;
+            if (monitoringRequested) {
+                candidate.detector.registerListener(forwarder, Runnable::run);
+            }
+        }
+        chooseProvider(candidate.provider);
+        if (assumedLight) {
+            // the callers have been told about a light theme, the listeners have to learn if it isn't
+            publishState(false);
+            onThemeDetected(candidate.dark);
+        } else {
+            publishState(candidate.dark);
+        }
+    }
+
+    /**
+     * @return the winner; {@code null} if none has answered until the deadline
+     */
+    @Nullable
+    private Candidate awaitWinner() {
+        try {
+            return race.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            assumedLight = true;
+            if (deadlineMissed.compareAndSet(false, true)) {
+                logger.warn("No theme detector has answered in time, assuming a light theme");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("Couldn't probe the theme detectors", e);
+        }
+        return null;
+    }
+
+    @Override
+    protected boolean queryDark() {
+        final Candidate current = winner;
+        if (current != null) {
+            return current.detector.queryDark();
+        }
+        // the answer of the race is fresh, there is no need to query the winner again
+        final Candidate first = awaitWinner();
+        return first != null && first.dark;
+    }
+
+    @Override
+    protected boolean isMonitoring() {
+        final Candidate current = winner;
+        return current != null && current.detector.isMonitoring();
+    }
+
+    @Override
+    protected void startMonitoring() {
+        synchronized (delegateLock) {
+            monitoringRequested = true;
+            if (winner != null) {
+                winner.detector.registerListener(forwarder, Runnable::run);
+            }
+        }
+    }
+
+    @Override
+    protected void stopMonitoring() {
+        synchronized (delegateLock) {
+            monitoringRequested = false;
+            if (winner != null) {
+                winner.detector.removeListener(forwarder);
+            }
+        }
+    }
+
+    @NotNull
+    @Override
+    public MonitorHealth getMonitorHealth() {
+        final Candidate current = winner;
+        return current != null ? current.detector.getMonitorHealth() : super.getMonitorHealth();
+    }
+
+    @Override
+    void release() {
+        for (FutureTask<Void> probe : probes) {
+            probe.cancel(true);
+        }
+        final Candidate current = winner;
+        if (current != null) {
+            current.detector.close();
+        }
+    }
+
+    private static final class Candidate {
+
+        private final ThemeDetectorProvider provider;
+        private final OsThemeDetector detector;
+        private final boolean dark;
+
+        Candidate(ThemeDetectorProvider provider, OsThemeDetector detector, boolean dark) {
+            this.provider = provider;
+            this.detector = detector;
+            this.dark = dark;
+        }
+    }
+}
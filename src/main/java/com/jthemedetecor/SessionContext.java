@@ -0,0 +1,149 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import oshi.annotation.concurrent.ThreadSafe;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * The environment of a desktop session: its session bus, home and desktop. On a host serving several
+ * sessions (e.g. remote desktops), {@link OsThemeDetector#getDetector(SessionContext)} keeps a detector
+ * per session.
+ * <p>
+ * Only the variables the detectors depend on are kept, so two contexts are equal if they describe the same session.
+ */
+@ThreadSafe
+public final class SessionContext {
+
+    static final String SESSION_BUS_ADDRESS = "DBUS_SESSION_BUS_ADDRESS";
+    static final String HOME = "HOME";
+    static final String CURRENT_DESKTOP = "XDG_CURRENT_DESKTOP";
+    static final String CONFIG_HOME = "XDG_CONFIG_HOME";
+    static final String DATA_DIRS = "XDG_DATA_DIRS";
+    static final String KDE_FULL_SESSION = "KDE_FULL_SESSION";
+    static final String GSETTINGS_BACKEND = "GSETTINGS_BACKEND";
+
+    private static final String[] VARIABLES = {
+            SESSION_BUS_ADDRESS, HOME, CURRENT_DESKTOP, CONFIG_HOME, DATA_DIRS, KDE_FULL_SESSION, GSETTINGS_BACKEND,
+            "XDG_SESSION_DESKTOP", "DESKTOP_SESSION", "XDG_RUNTIME_DIR", "DISPLAY", "WAYLAND_DISPLAY"
+    };
+
+    private final Map<String, String> environment;
+
+    private SessionContext(@NotNull Map<String, String> environment) {
+        final Map<String, String> relevant = new TreeMap<>();
+        for (String variable : VARIABLES) {
+            final String value = environment.get(variable);
+            if (value != null && !value.isEmpty()) {
+                relevant.put(variable, value);
+            }
+        }
+        this.environment = Collections.unmodifiableMap(relevant);
+    }
+
+    /**
+     * @return the session of the running process
+     */
+    @NotNull
+    public static SessionContext current() {
+        return CurrentHolder.CURRENT;
+    }
+
+    /**
+     * @param environment the environment variables of the session, e.g. {@code DBUS_SESSION_BUS_ADDRESS},
+     *                    {@code HOME} and {@code XDG_CURRENT_DESKTOP}
+     */
+    @NotNull
+    public static SessionContext of(@NotNull Map<String, String> environment) {
+        return new SessionContext(environment);
+    }
+
+    /**
+     * @return the kept environment variables of the session
+     */
+    @NotNull
+    public Map<String, String> getEnvironment() {
+        return environment;
+    }
+
+    @Nullable
+    public String get(@NotNull String variable) {
+        return environment.get(variable);
+    }
+
+    /**
+     * @return {@code true} if this is the session of the running process
+     */
+    public boolean isCurrent() {
+        return equals(current());
+    }
+
+    @NotNull
+    Path home() {
+        final String home = environment.get(HOME);
+        return Paths.get(home != null ? home : System.getProperty("user.home"));
+    }
+
+    @NotNull
+    Path configHome() {
+        final String configHome = environment.get(CONFIG_HOME);
+        return configHome != null ? Paths.get(configHome) : home().resolve(".config");
+    }
+
+    /**
+     * Checks the desktop variables only; unlike {@link com.jthemedetecor.util.OsInfo#isGnome()}, it doesn't
+     * look at the running processes, which belong to every session of the host.
+     */
+    boolean isGnome() {
+        return contains(CURRENT_DESKTOP, "gnome") || contains(DATA_DIRS, "gnome");
+    }
+
+    boolean isKde() {
+        return contains(CURRENT_DESKTOP, "kde") || "true".equalsIgnoreCase(environment.get(KDE_FULL_SESSION));
+    }
+
+    private boolean contains(String variable, String desktop) {
+        final String value = environment.get(variable);
+        return value != null && value.toLowerCase(Locale.ROOT).contains(desktop);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return this == o || o instanceof SessionContext && environment.equals(((SessionContext) o).environment);
+    }
+
+    @Override
+    public int hashCode() {
+        return environment.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "SessionContext" + environment;
+    }
+
+    private static final class CurrentHolder {
+        private static final SessionContext CURRENT = new SessionContext(System.getenv());
+    }
+}
@@ -0,0 +1,243 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The detectors of {@link OsThemeDetector#getDetector(SessionContext)}, one per session, in the order
+ * of their last use. A session is only dropped while its detector is idle, so the monitoring of a session
+ * with listeners is never stopped by the registry; an idle detector holds no monitor threads or processes,
+ * only the connections its queries keep open, which are released when it's dropped.
+ * <p>
+ * A dropped detector isn't closed, as its callers may still hold it: it stays usable and is only referenced
+ * weakly, so it's handed out again while it's reachable, and {@link #closeAll()} still closes it.
+ */
+final class SessionRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(SessionRegistry.class);
+
+    static final int DEFAULT_MAX_SESSIONS = 64;
+    private static final long DEFAULT_IDLE_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(10);
+    private static final long MIN_SWEEP_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final Object lock = new Object();
+    // access-ordered: the least recently used session comes first
+    private final LinkedHashMap<SessionContext, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // the detectors of the dropped sessions, until they're unreachable
+    private final Map<SessionContext, WeakReference<OsThemeDetector>> droppedDetectors = new HashMap<>();
+
+    private int maxSessions = DEFAULT_MAX_SESSIONS;
+    private long idleTimeoutNanos = DEFAULT_IDLE_TIMEOUT_NANOS;
+    private ScheduledFuture<?> sweepTask;
+
+    @NotNull
+    static SessionRegistry getInstance() {
+        return InstanceHolder.INSTANCE;
+    }
+
+    @NotNull
+    OsThemeDetector get(@NotNull SessionContext session) {
+        final Entry entry;
+        final List<Entry> dropped;
+        synchronized (lock) {
+            entry = entries.computeIfAbsent(session, this::revive);
+            entry.lastAccessNanos = System.nanoTime();
+            dropped = dropLeastRecentlyUsed();
+            if (sweepTask == null) {
+                scheduleSweep();
+            }
+        }
+        release(dropped);
+        // the detector is created outside of the lock, so a slow probe only delays its own session
+        return entry.detector();
+    }
+
+    void setLimits(int maxSessions, long idleTimeoutNanos) {
+        final List<Entry> dropped;
+        synchronized (lock) {
+            this.maxSessions = maxSessions;
+            this.idleTimeoutNanos = idleTimeoutNanos;
+            dropped = dropLeastRecentlyUsed();
+            if (sweepTask != null) {
+                sweepTask.cancel(false);
+                scheduleSweep();
+            }
+        }
+        release(dropped);
+    }
+
+    /**
+     * Closes the detectors of all sessions, including the ones in use and the dropped ones still held
+     * by their callers.
+     */
+    void closeAll() {
+        final List<OsThemeDetector> detectors = new ArrayList<>();
+        synchronized (lock) {
+            for (Entry entry : entries.values()) {
+                if (entry.detector != null) {
+                    detectors.add(entry.detector);
+                }
+            }
+            for (WeakReference<OsThemeDetector> reference : droppedDetectors.values()) {
+                final OsThemeDetector detector = reference.get();
+                if (detector != null) {
+                    detectors.add(detector);
+                }
+            }
+            entries.clear();
+            droppedDetectors.clear();
+            if (sweepTask != null) {
+                sweepTask.cancel(false);
+                sweepTask = null;
+            }
+        }
+        detectors.forEach(OsThemeDetector::close);
+    }
+
+    int size() {
+        synchronized (lock) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Drops the least recently used idle sessions above the maximum size.
+     */
+    private List<Entry> dropLeastRecentlyUsed() {
+        final List<Entry> dropped = new ArrayList<>();
+        final Iterator<Entry> iterator = entries.values().iterator();
+        while (entries.size() > maxSessions && iterator.hasNext()) {
+            final Entry entry = iterator.next();
+            if (entry.isIdle()) {
+                iterator.remove();
+                dropped.add(entry);
+            }
+        }
+        retain(dropped);
+        if (entries.size() > maxSessions) {
+            logger.debug("{} sessions are in use, more than the maximum of {}", entries.size(), maxSessions);
+        }
+        return dropped;
+    }
+
+    /**
+     * Drops the idle sessions that haven't been asked for during the idle timeout.
+     */
+    private void sweep() {
+        final List<Entry> dropped = new ArrayList<>();
+        synchronized (lock) {
+            final long now = System.nanoTime();
+            final Iterator<Entry> iterator = entries.values().iterator();
+            while (iterator.hasNext()) {
+                final Entry entry = iterator.next();
+                if (now - entry.lastAccessNanos >= idleTimeoutNanos && entry.isIdle()) {
+                    iterator.remove();
+                    dropped.add(entry);
+                }
+            }
+            droppedDetectors.values().removeIf(reference -> reference.get() == null);
+            retain(dropped);
+            if (entries.isEmpty() && droppedDetectors.isEmpty()) {
+                sweepTask.cancel(false);
+                sweepTask = null;
+            }
+        }
+        release(dropped);
+    }
+
+    /**
+     * Keeps the detectors of the dropped sessions weakly.
+     */
+    private void retain(List<Entry> dropped) {
+        for (Entry entry : dropped) {
+            droppedDetectors.put(entry.session, new WeakReference<>(entry.detector));
+        }
+    }
+
+    /**
+     * @return the entry of a session, with the detector it had when it was dropped if a caller still holds it
+     */
+    private Entry revive(SessionContext session) {
+        final WeakReference<OsThemeDetector> reference = droppedDetectors.remove(session);
+        return new Entry(session, reference == null ? null : reference.get());
+    }
+
+    private void scheduleSweep() {
+        final long period = Math.max(idleTimeoutNanos / 2, MIN_SWEEP_PERIOD_NANOS);
+        sweepTask = DetectorExecution.scheduler().scheduleWithFixedDelay(this::sweep, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    private static void release(List<Entry> dropped) {
+        for (Entry entry : dropped) {
+            logger.debug("Dropping the idle detector of {}", entry.session);
+            // a caller may have registered a listener since, then the detector keeps its resources
+            entry.detector.releaseIfIdle();
+        }
+    }
+
+    private static final class InstanceHolder {
+        private static final SessionRegistry INSTANCE = new SessionRegistry();
+    }
+
+    /**
+     * The detector of a session, created when it's first needed.
+     */
+    private static final class Entry {
+
+        private final SessionContext session;
+
+        // guarded by the lock of the registry
+        private long lastAccessNanos;
+
+        private volatile OsThemeDetector detector;
+
+        Entry(SessionContext session, @Nullable OsThemeDetector detector) {
+            this.session = session;
+            this.detector = detector;
+        }
+
+        @NotNull
+        synchronized OsThemeDetector detector() {
+            if (detector == null || detector.isClosed()) {
+                detector = DetectorFactory.create(session);
+            }
+            return detector;
+        }
+
+        /**
+         * @return {@code true} if the detector has no listeners; an entry whose detector is still being
+         * created isn't idle, as its caller is about to use it
+         */
+        boolean isIdle() {
+            final OsThemeDetector current = detector;
+            return current != null && !current.isInUse();
+        }
+    }
+}
@@ -0,0 +1,431 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Shares the monitoring of the os between the JVMs of a user session: the JVM holding the lock file
+ * under {@code $XDG_RUNTIME_DIR/jSystemThemeDetector} (the leader) monitors the os with the detector
+ * of the platform, and publishes the theme into a small memory-mapped file. The other JVMs only read
+ * that file, woken up by the file-change notifications of the os, so they spawn no processes and
+ * run no monitoring of their own.
+ * <p>
+ * Only the JVMs with listeners take part. When the leader stops monitoring or exits, the os releases
+ * its lock and one of the others takes over.
+ */
+final class SharedThemeDetector extends OsThemeDetector {
+
+    private static final Logger logger = LoggerFactory.getLogger(SharedThemeDetector.class);
+
+    static final String ENABLED_PROPERTY = "jthemedetector.sharedMonitoring";
+
+    private static final String DIRECTORY_NAME = "jSystemThemeDetector";
+
+    // the variables that tell the sessions of a user apart; the runtime directory is per user already
+    private static final String[] SESSION_VARIABLES = {
+            SessionContext.SESSION_BUS_ADDRESS, SessionContext.CURRENT_DESKTOP, SessionContext.GSETTINGS_BACKEND
+    };
+
+    // the layout of the state file; the words are aligned, so they are read and written atomically
+    private static final int FILE_SIZE = 64;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int LEADER_PID_OFFSET = 8;
+    // the sequence number of the publication shifted left by one, or-ed with 1 if the theme is dark
+    private static final int STATE_OFFSET = 16;
+    // written through the channel, as the stores into the mapping aren't reported by the file-change notifications
+    private static final int NOTIFY_OFFSET = 24;
+    private static final long MAGIC = 0x6A53544431L; // "jSTD1"
+
+    // how often a follower checks whether the leader is gone without notice, and every JVM checks whether
+    // the state file has been deleted: the watch of a deleted directory isn't cancelled while its files are open
+    private static final long FAILOVER_CHECK_MILLIS = 500;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final OsThemeDetector local;
+    private final Path stateFile;
+    private final Path lockFile;
+    private final Consumer<Boolean> forwarder = this::onLocalThemeDetected;
+
+    private final Object leaderLock = new Object();
+    private boolean leading;
+    private long sequence;
+    // replaced under the leader lock if the state file is deleted, see remapIfReplaced()
+    private volatile FileChannel stateChannel;
+    private volatile MappedByteBuffer sharedState;
+    private volatile Object mappedFileKey;
+
+    private volatile SharingThread sharingThread;
+
+    private SharedThemeDetector(@NotNull OsThemeDetector local, @NotNull Path directory, @NotNull String id) throws IOException {
+        this.local = local;
+        this.stateFile = directory.resolve(id + ".state");
+        this.lockFile = directory.resolve(id + ".lock");
+        mapState();
+        // the detector of the leader reports every change right away, this detector coalesces them
+        local.setCoalescingWindow(0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Opens and maps the state file, creating it if it doesn't exist.
+     */
+    private void mapState() throws IOException {
+        final FileChannel channel = FileChannel.open(stateFile,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            // the first JVM creates an empty state; the words of zeros mean that nothing has been published
+            if (channel.size() < FILE_SIZE) {
+                channel.write(ByteBuffer.allocate(1), FILE_SIZE - 1);
+            }
+            sharedState = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+            mappedFileKey = Files.readAttributes(stateFile, BasicFileAttributes.class).fileKey();
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        stateChannel = channel;
+    }
+
+    /**
+     * @return {@code true} if the mapped state file has been deleted or replaced by another file
+     */
+    private boolean isStateFileReplaced() {
+        final Object fileKey = mappedFileKey;
+        try {
+            return fileKey == null || !fileKey.equals(Files.readAttributes(stateFile, BasicFileAttributes.class).fileKey());
+        } catch (IOException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Maps the state file again if it has been deleted or replaced since it was mapped (e.g. the runtime
+     * directory has been cleaned up), so this JVM shares the same file as the others again.
+     */
+    private void remapIfReplaced() throws IOException {
+        Files.createDirectories(stateFile.getParent());
+        synchronized (leaderLock) {
+            if (!isStateFileReplaced()) {
+                return;
+            }
+            logger.debug("The shared state {} has been replaced, mapping it again", stateFile);
+            final FileChannel previous = stateChannel;
+            mapState();
+            previous.close();
+        }
+    }
+
+    /**
+     * Wraps the detector of the platform, so its monitoring is shared with the other JVMs of the session.
+     *
+     * @return the given detector itself if there is no runtime directory to share the state in
+     */
+    @NotNull
+    static OsThemeDetector share(@NotNull OsThemeDetector local) {
+        final String runtimeDirectory = System.getenv("XDG_RUNTIME_DIR");
+        if (runtimeDirectory == null || runtimeDirectory.isEmpty()) {
+            logger.debug("No XDG_RUNTIME_DIR, the monitoring isn't shared with other processes");
+            return local;
+        }
+        final Path directory = Paths.get(runtimeDirectory, DIRECTORY_NAME);
+        try {
+            Files.createDirectories(directory);
+            final SharedThemeDetector detector = new SharedThemeDetector(local, directory, sessionId());
+            logger.debug("Sharing the monitoring of {} through {}", local.getClass().getName(), detector.stateFile);
+            return detector;
+        } catch (IOException | RuntimeException e) {
+            logger.warn("Couldn't share the monitoring through {}, monitoring the os in this process", directory, e);
+            return local;
+        }
+    }
+
+    @NotNull
+    private static String sessionId() {
+        final StringBuilder session = new StringBuilder();
+        for (String variable : SESSION_VARIABLES) {
+            final String value = System.getenv(variable);
+            session.append(value == null ? "" : value).append('|');
+        }
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-256").digest(session.toString().getBytes(StandardCharsets.UTF_8));
+            final StringBuilder id = new StringBuilder("theme-");
+            for (int i = 0; i < 8; i++) {
+                id.append(String.format("%02x", digest[i]));
+            }
+            return id.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return "theme-" + Integer.toHexString(session.toString().hashCode());
+        }
+    }
+
+    /**
+     * Reads the published state with a single load; on the common platforms the acquire is a plain load.
+     *
+     * @return the state word; {@code 0} if no leader has published a state yet
+     */
+    private long readSharedState() {
+        if ((long) LONGS.getAcquire(sharedState, MAGIC_OFFSET) != MAGIC) {
+            return 0;
+        }
+        return (long) LONGS.getAcquire(sharedState, STATE_OFFSET);
+    }
+
+    /**
+     * Takes over the monitoring after the lock has been acquired.
+     */
+    private void lead() {
+        synchronized (leaderLock) {
+            leading = true;
+            sequence = readSharedState() >>> 1;
+            LONGS.setRelease(sharedState, LEADER_PID_OFFSET, ProcessHandle.current().pid());
+            LONGS.setRelease(sharedState, MAGIC_OFFSET, MAGIC);
+        }
+        logger.debug("Monitoring the os for the processes sharing {}", stateFile);
+        try {
+            local.registerListener(forwarder, Runnable::run);
+        } catch (IllegalStateException e) {
+            // the detector is being closed, the loop is interrupted already
+            return;
+        }
+        // the listener only learns about the changes, the current theme has to be published too
+        onLocalThemeDetected(local.isDark());
+    }
+
+    /**
+     * Stops the monitoring of the leader; the lock is released by the caller afterwards.
+     */
+    private void resign() {
+        synchronized (leaderLock) {
+            if (!leading) {
+                return;
+            }
+            leading = false;
+        }
+        logger.debug("Stopped monitoring the os for the processes sharing {}", stateFile);
+        local.removeListener(forwarder);
+    }
+
+    private void onLocalThemeDetected(boolean dark) {
+        synchronized (leaderLock) {
+            if (!leading) {
+                return;
+            }
+            final long word = readSharedState();
+            if (word == 0 || ((word & 1) == 1) != dark) {
+                LONGS.setRelease(sharedState, STATE_OFFSET, (++sequence << 1) | (dark ? 1 : 0));
+                notifyFollowers();
+            }
+        }
+        onThemeDetected(dark);
+    }
+
+    /**
+     * Modifies the file through the channel, so the followers watching it are woken up.
+     */
+    private void notifyFollowers() {
+        // an interrupt would close the channel in the middle of the write
+        final boolean interrupted = Thread.interrupted();
+        try {
+            stateChannel.write(ByteBuffer.wrap(new byte[]{(byte) sequence}), NOTIFY_OFFSET);
+        } catch (IOException e) {
+            logger.debug("Couldn't notify the processes sharing {}", stateFile, e);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    protected boolean queryDark() {
+        return local.queryDark();
+    }
+
+    @Override
+    protected boolean isMonitoring() {
+        return sharingThread != null;
+    }
+
+    @Override
+    protected void startMonitoring() {
+        final SharingThread currentSharingThread = sharingThread;
+        if (currentSharingThread == null || currentSharingThread.isInterrupted()) {
+            final SharingThread newSharingThread = new SharingThread(this);
+            this.sharingThread = newSharingThread;
+            startMonitorTask(newSharingThread);
+        }
+    }
+
+    @Override
+    protected void stopMonitoring() {
+        final SharingThread currentSharingThread = sharingThread;
+        if (currentSharingThread != null) {
+            currentSharingThread.interrupt();
+            this.sharingThread = null;
+        }
+    }
+
+    @NotNull
+    @Override
+    public MonitorHealth getMonitorHealth() {
+        final boolean currentlyLeading;
+        synchronized (leaderLock) {
+            currentlyLeading = leading;
+        }
+        final MonitorHealth sharing = super.getMonitorHealth();
+        if (!currentlyLeading || !sharing.isHealthy()) {
+            return sharing;
+        }
+        // the failures of the sharing itself (e.g. a deleted state file) count as well as the ones of the os monitoring
+        final MonitorHealth monitoring = local.getMonitorHealth();
+        final MonitorHealth lastFailed = sharing.getLastFailureTimeMillis() > monitoring.getLastFailureTimeMillis() ?
+                sharing : monitoring;
+        return new MonitorHealth(monitoring.getState(), sharing.getRestarts() + monitoring.getRestarts(),
+                lastFailed.getLastFailure(), lastFailed.getLastFailureTimeMillis());
+    }
+
+    @Nullable
+    @Override
+    GnomeInterfaceMonitor appearanceMonitor() {
+        return local.appearanceMonitor();
+    }
+
+    @Override
+    void release() {
+        local.close();
+        try {
+            stateChannel.close();
+        } catch (IOException e) {
+            logger.debug("Couldn't close {}", stateFile, e);
+        }
+    }
+
+    /**
+     * Competes for the lock; follows the published state while another JVM holds it, and monitors
+     * the os through the detector of the platform while this JVM does.
+     */
+    private static final class SharingThread extends FileWatchTask {
+
+        private final SharedThemeDetector detector;
+        private long lastState;
+        private FileChannel lockChannel;
+        private FileLock lock;
+
+        SharingThread(@NotNull SharedThemeDetector detector) {
+            super("Shared Theme Detector Thread", detector.stateFile);
+            this.detector = detector;
+            // the state of a leader that is gone is corrected by the next leader
+            lastState = detector.readSharedState();
+            if (lastState != 0) {
+                detector.publishState((lastState & 1) == 1);
+            } else {
+                detector.refreshState();
+            }
+        }
+
+        @Override
+        void watchStarting() throws IOException {
+            // a restart after a failure finds the directory recreated or still missing
+            detector.remapIfReplaced();
+            lockChannel = FileChannel.open(detector.lockFile, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        }
+
+        @Override
+        void fileChanged() {
+            if (lock == null) {
+                onSharedStateChanged();
+            }
+        }
+
+        @Override
+        long beforeWait() throws IOException {
+            if (lock == null) {
+                lock = tryLock(lockChannel);
+                if (lock != null) {
+                    detector.lead();
+                } else {
+                    // the leader could have published before the registration took effect
+                    onSharedStateChanged();
+                }
+            }
+            return FAILOVER_CHECK_MILLIS;
+        }
+
+        @Nullable
+        @Override
+        String checkFile() {
+            return detector.isStateFileReplaced() ? "the shared state file has been deleted or replaced" : null;
+        }
+
+        @Override
+        void watchEnded() throws IOException {
+            try {
+                if (lock != null) {
+                    detector.resign();
+                    lock.release();
+                    // the followers don't have to wait for their next check to take over
+                    detector.notifyFollowers();
+                }
+            } finally {
+                if (lockChannel != null) {
+                    lockChannel.close();
+                }
+            }
+        }
+
+        @Nullable
+        private static FileLock tryLock(FileChannel lockChannel) throws IOException {
+            try {
+                return lockChannel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                // another detector of this JVM is the leader, e.g. a closed one that is still stopping
+                return null;
+            }
+        }
+
+        private void onSharedStateChanged() {
+            final long state = detector.readSharedState();
+            if (state != 0 && state != lastState) {
+                lastState = state;
+                detector.onThemeDetected((state & 1) == 1);
+            }
+        }
+    }
+}
@@ -0,0 +1,249 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import oshi.annotation.concurrent.ThreadSafe;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A detector that doesn't look at the os, but replays a timeline of theme changes, for load-testing
+ * how an application reacts to them (e.g. on a headless CI machine).
+ * <p>
+ * The timeline is a comma-separated list of segments:
+ * <ul>
+ *     <li>{@code <events>@<rate>}: the given number of theme changes at the given rate (changes per second),
+ *     each of them switching between dark and light</li>
+ *     <li>{@code wait:<millis>}: a pause</li>
+ * </ul>
+ * E.g. {@code 100@10,wait:500,10000@5000}. The theme starts as light.
+ * <p>
+ * If the {@value #TIMELINE_PROPERTY} system property is set, {@link OsThemeDetector#getDetector()} returns
+ * a simulated detector with the timeline of the property, which is replayed when the first listener is registered.
+ * <p>
+ * The changes aren't coalesced by default, so every change reaches the listeners (unless a listener
+ * is still busy with the previous one); see {@link #setCoalescingWindow(long, TimeUnit)}.
+ */
+@ThreadSafe
+public final class SimulatedThemeDetector extends OsThemeDetector {
+
+    private static final Logger logger = LoggerFactory.getLogger(SimulatedThemeDetector.class);
+
+    /**
+     * The system property selecting the simulated detector, holding its timeline.
+     */
+    public static final String TIMELINE_PROPERTY = "jthemedetector.simulation";
+
+    private static final String WAIT_PREFIX = "wait:";
+    private static final long DRAIN_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long DRAIN_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final List<Segment> timeline;
+    private final boolean replayOnMonitoring;
+
+    private volatile boolean dark;
+    private volatile boolean monitoring;
+
+    private final Object replayLock = new Object();
+    private ReplayTask replayTask;
+
+    /**
+     * Creates a detector whose theme only changes through {@link #emit(boolean)}.
+     */
+    public SimulatedThemeDetector() {
+        this("");
+    }
+
+    /**
+     * @param timeline the timeline replayed by {@link #replay()}
+     * @throws IllegalArgumentException if the timeline is malformed
+     */
+    public SimulatedThemeDetector(@NotNull String timeline) {
+        this(timeline, false);
+    }
+
+    SimulatedThemeDetector(@NotNull String timeline, boolean replayOnMonitoring) {
+        this.timeline = parse(timeline);
+        this.replayOnMonitoring = replayOnMonitoring;
+        setCoalescingWindow(0, TimeUnit.MILLISECONDS);
+    }
+
+    @NotNull
+    private static List<Segment> parse(@NotNull String timeline) {
+        final List<Segment> segments = new ArrayList<>();
+        for (String segment : timeline.split(",")) {
+            segment = segment.trim();
+            if (segment.isEmpty()) {
+                continue;
+            }
+            try {
+                if (segment.startsWith(WAIT_PREFIX)) {
+                    final long millis = Long.parseLong(segment.substring(WAIT_PREFIX.length()).trim());
+                    segments.add(new Segment(0, TimeUnit.MILLISECONDS.toNanos(millis)));
+                } else {
+                    final int separator = segment.indexOf('@');
+                    if (separator < 0) {
+                        throw new IllegalArgumentException("Invalid timeline segment: " + segment);
+                    }
+                    final long events = Long.parseLong(segment.substring(0, separator).trim());
+                    final double rate = Double.parseDouble(segment.substring(separator + 1).trim());
+                    if (events < 0 || !(rate > 0)) {
+                        throw new IllegalArgumentException("Invalid timeline segment: " + segment);
+                    }
+                    segments.add(new Segment(events, (long) (TimeUnit.SECONDS.toNanos(1) / rate)));
+                }
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Invalid timeline segment: " + segment, e);
+            }
+        }
+        return Collections.unmodifiableList(segments);
+    }
+
+    /**
+     * Changes the simulated theme, like the os would.
+     */
+    public void emit(boolean dark) {
+        this.dark = dark;
+        onThemeDetected(dark);
+    }
+
+    /**
+     * Replays the timeline on a background thread, unless it is being replayed already.
+     * The timings of the listeners are recorded from then on, see {@link OsThemeDetector#enableListenerMetrics()}.
+     *
+     * @return the future report of the replay in progress; it is completed once the listeners
+     * have processed the changes (or after 10 seconds of waiting for them)
+     */
+    @NotNull
+    public CompletableFuture<SimulationReport> replay() {
+        GlobalMetrics.enableListenerMetrics();
+        synchronized (replayLock) {
+            if (replayTask == null || replayTask.report.isDone()) {
+                replayTask = new ReplayTask(this);
+                startMonitorTask(replayTask);
+            }
+            return replayTask.report;
+        }
+    }
+
+    @Override
+    protected boolean queryDark() {
+        return dark;
+    }
+
+    @Override
+    protected boolean isMonitoring() {
+        return monitoring;
+    }
+
+    @Override
+    protected void startMonitoring() {
+        if (!monitoring) {
+            publishState(dark);
+            monitoring = true;
+            if (replayOnMonitoring) {
+                replay().thenAccept(report -> logger.info("{}", report));
+            }
+        }
+    }
+
+    @Override
+    protected void stopMonitoring() {
+        monitoring = false;
+        synchronized (replayLock) {
+            if (replayTask != null) {
+                replayTask.interrupt();
+            }
+        }
+    }
+
+    private static final class Segment {
+
+        // 0 for a pause
+        private final long events;
+        // the time between the events, or the length of the pause
+        private final long nanos;
+
+        Segment(long events, long nanos) {
+            this.events = events;
+            this.nanos = nanos;
+        }
+    }
+
+    private static final class ReplayTask extends MonitorTask {
+
+        private final SimulatedThemeDetector detector;
+        private final CompletableFuture<SimulationReport> report = new CompletableFuture<>();
+
+        ReplayTask(@NotNull SimulatedThemeDetector detector) {
+            super("Theme Simulation Thread");
+            this.detector = detector;
+        }
+
+        @Override
+        public void run() {
+            try {
+                final DispatchStatistics before = detector.getDispatchStatistics();
+                final long start = System.nanoTime();
+                long emitted = 0;
+                for (Segment segment : detector.timeline) {
+                    if (segment.events == 0) {
+                        sleepUntil(System.nanoTime() + segment.nanos);
+                    }
+                    final long segmentStart = System.nanoTime();
+                    for (long i = 0; i < segment.events && !isInterrupted(); i++) {
+                        // a late event is emitted right away, without making up for the lost time
+                        sleepUntil(segmentStart + i * segment.nanos);
+                        detector.emit(!detector.dark);
+                        emitted++;
+                    }
+                }
+                if (isInterrupted()) {
+                    return;
+                }
+                final long emitDuration = System.nanoTime() - start;
+                final long drainDeadline = System.nanoTime() + DRAIN_TIMEOUT_NANOS;
+                while (!detector.listenersIdle() && System.nanoTime() < drainDeadline && !isInterrupted()) {
+                    LockSupport.parkNanos(DRAIN_POLL_NANOS);
+                }
+                final long totalDuration = System.nanoTime() - start;
+                final DetectorMetrics metrics = detector.getMetrics();
+                report.complete(new SimulationReport(emitted, emitDuration, totalDuration,
+                        before, metrics.getDispatchStatistics(), metrics.getListenerStatistics()));
+            } catch (RuntimeException e) {
+                report.completeExceptionally(e);
+            } finally {
+                // no-op if the report is complete
+                report.completeExceptionally(new IllegalStateException("The replay has been interrupted"));
+            }
+        }
+
+        private void sleepUntil(long deadline) {
+            long remaining;
+            while (!isInterrupted() && (remaining = deadline - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of a replay of a {@link SimulatedThemeDetector}: the rate of the simulated changes,
+ * the notifications delivered meanwhile and the timings of the listeners.
+ */
+public final class SimulationReport {
+
+    private final long emittedEvents;
+    private final long emitDurationNanos;
+    private final long totalDurationNanos;
+    private final long deliveredNotifications;
+    private final long droppedNotifications;
+    private final long failedNotifications;
+    private final List<ListenerStatistics> listenerStatistics;
+
+    SimulationReport(long emittedEvents, long emitDurationNanos, long totalDurationNanos,
+                     @NotNull DispatchStatistics before, @NotNull DispatchStatistics after,
+                     @NotNull List<ListenerStatistics> listenerStatistics) {
+        this.emittedEvents = emittedEvents;
+        this.emitDurationNanos = emitDurationNanos;
+        this.totalDurationNanos = totalDurationNanos;
+        this.deliveredNotifications = after.getDelivered() - before.getDelivered();
+        this.droppedNotifications = after.getDropped() - before.getDropped();
+        this.failedNotifications = after.getFailed() - before.getFailed();
+        this.listenerStatistics = List.copyOf(listenerStatistics);
+    }
+
+    /**
+     * @return the number of simulated theme changes
+     */
+    public long getEmittedEvents() {
+        return emittedEvents;
+    }
+
+    /**
+     * @return the time it took to emit the changes, in nanoseconds
+     */
+    public long getEmitDurationNanos() {
+        return emitDurationNanos;
+    }
+
+    /**
+     * @return the time until the listeners have processed the changes, in nanoseconds
+     */
+    public long getTotalDurationNanos() {
+        return totalDurationNanos;
+    }
+
+    /**
+     * @return the achieved rate of the changes, per second
+     */
+    public double getEmitRate() {
+        return perSecond(emittedEvents, emitDurationNanos);
+    }
+
+    /**
+     * @return the number of notifications the listeners have processed during the replay
+     */
+    public long getDeliveredNotifications() {
+        return deliveredNotifications;
+    }
+
+    /**
+     * @return the number of changes a busy listener skipped, as a newer one arrived meanwhile
+     */
+    public long getDroppedNotifications() {
+        return droppedNotifications;
+    }
+
+    /**
+     * @return the number of notifications that threw an exception or couldn't be scheduled
+     */
+    public long getFailedNotifications() {
+        return failedNotifications;
+    }
+
+    /**
+     * @return the delivered notifications per second, over the whole replay
+     */
+    public double getDeliveryRate() {
+        return perSecond(deliveredNotifications, totalDurationNanos);
+    }
+
+    /**
+     * @return the timings of the listeners, accumulated since their registration
+     */
+    @NotNull
+    public List<ListenerStatistics> getListenerStatistics() {
+        return listenerStatistics;
+    }
+
+    private static double perSecond(long count, long nanos) {
+        return nanos == 0 ? 0 : count * (double) TimeUnit.SECONDS.toNanos(1) / nanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SimulationReport{emittedEvents=%d, emitRate=%.1f/s, delivered=%d, deliveryRate=%.1f/s, " +
+                        "dropped=%d, failed=%d, totalDuration=%d ms, listenerStatistics=%s}",
+                emittedEvents, getEmitRate(), deliveredNotifications, getDeliveryRate(),
+                droppedNotifications, failedNotifications, TimeUnit.NANOSECONDS.toMillis(totalDurationNanos),
+                listenerStatistics);
+    }
+}
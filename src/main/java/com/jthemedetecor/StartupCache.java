@@ -0,0 +1,258 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Remembers the chosen detector and the last observed theme across JVM starts, so a new process can skip
+ * the platform probing and answer its first {@link OsThemeDetector#isDark()} without querying the os.
+ * <p>
+ * The file ({@code $XDG_CACHE_HOME/jSystemThemeDetector/startup.properties}) is keyed by a fingerprint of
+ * the environment: an entry written in another desktop session or on another os version is ignored.
+ */
+final class StartupCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupCache.class);
+
+    static final String ENABLED_PROPERTY = "jthemedetector.startupCache";
+
+    private static final String DIRECTORY_NAME = "jSystemThemeDetector";
+    private static final String FILE_NAME = "startup.properties";
+    private static final String BUILT_IN_PREFIX = "builtin:";
+
+    private static final String FINGERPRINT_KEY = "fingerprint";
+    private static final String PROVIDER_KEY = "provider";
+    private static final String DARK_KEY = "dark";
+
+    // the environment that decides which detector is applicable
+    private static final String[] FINGERPRINT_VARIABLES = {
+            "XDG_CURRENT_DESKTOP", "XDG_SESSION_DESKTOP", "DESKTOP_SESSION", "KDE_FULL_SESSION",
+            "GSETTINGS_BACKEND", "DBUS_SESSION_BUS_ADDRESS"
+    };
+
+    private final Path file;
+    private final String fingerprint;
+    // the latest entry that hasn't been written yet; only the last one of a burst of stores is written
+    private final AtomicReference<Entry> pendingEntry = new AtomicReference<>();
+    private final AtomicBoolean flushOnShutdown = new AtomicBoolean();
+
+    StartupCache(@NotNull Path file, @NotNull String fingerprint) {
+        this.file = file;
+        this.fingerprint = fingerprint;
+    }
+
+    @NotNull
+    static StartupCache getDefault() {
+        return new StartupCache(defaultFile(), currentFingerprint());
+    }
+
+    @NotNull
+    private static Path defaultFile() {
+        final String cacheHome = System.getenv("XDG_CACHE_HOME");
+        final Path cacheDirectory = cacheHome != null && !cacheHome.isEmpty() ?
+                Paths.get(cacheHome) : Paths.get(System.getProperty("user.home"), ".cache");
+        return cacheDirectory.resolve(DIRECTORY_NAME).resolve(FILE_NAME);
+    }
+
+    @NotNull
+    private static String currentFingerprint() {
+        final StringBuilder fingerprint = new StringBuilder()
+                .append(System.getProperty("os.name")).append(' ')
+                .append(System.getProperty("os.version")).append(' ')
+                .append(System.getProperty("os.arch")).append(' ')
+                .append(System.getProperty(SimulatedThemeDetector.TIMELINE_PROPERTY));
+        for (String variable : FINGERPRINT_VARIABLES) {
+            final String value = System.getenv(variable);
+            fingerprint.append('|').append(value == null ? "" : value);
+        }
+        return fingerprint.toString();
+    }
+
+    /**
+     * @return the entry written in the same environment; {@code null} if there is none
+     */
+    @Nullable
+    Entry load() {
+        final Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(file)) {
+            properties.load(input);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | IllegalArgumentException e) {
+            logger.debug("Couldn't read the startup cache {}", file, e);
+            return null;
+        }
+        final String provider = properties.getProperty(PROVIDER_KEY);
+        final String dark = properties.getProperty(DARK_KEY);
+        if (!fingerprint.equals(properties.getProperty(FINGERPRINT_KEY)) || provider == null || dark == null) {
+            logger.debug("The startup cache {} belongs to another environment", file);
+            return null;
+        }
+        return new Entry(provider, Boolean.parseBoolean(dark));
+    }
+
+    /**
+     * Replaces the entry without blocking: the file is written on the notification executor, as the state
+     * is published on the monitoring threads and by {@link OsThemeDetector#isDark()}. A pending entry is
+     * written when the JVM shuts down, so short-lived processes don't lose it.
+     */
+    void store(@NotNull ThemeDetectorProvider provider, boolean dark) {
+        if (pendingEntry.getAndSet(new Entry(providerId(provider), dark)) != null) {
+            // the write in progress picks up the latest entry
+            return;
+        }
+        if (flushOnShutdown.compareAndSet(false, true)) {
+            Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "Theme Detector Cache Thread"));
+        }
+        try {
+            DetectorExecution.executor().execute(this::flush);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Couldn't schedule the write of the startup cache {}", file, e);
+        }
+    }
+
+    /**
+     * Writes the pending entry, if there is one.
+     */
+    void flush() {
+        synchronized (this) {
+            final Entry entry = pendingEntry.getAndSet(null);
+            if (entry != null) {
+                write(entry);
+            }
+        }
+    }
+
+    /**
+     * Replaces the file; it is written next to the cache and moved over it,
+     * so concurrent readers never see a partial file.
+     */
+    private void write(@NotNull Entry entry) {
+        final Properties properties = new Properties();
+        properties.setProperty(FINGERPRINT_KEY, fingerprint);
+        properties.setProperty(PROVIDER_KEY, entry.getProviderId());
+        properties.setProperty(DARK_KEY, Boolean.toString(entry.isDark()));
+        try {
+            Files.createDirectories(file.getParent());
+            final Path temporary = Files.createTempFile(file.getParent(), FILE_NAME, null);
+            try {
+                try (OutputStream output = Files.newOutputStream(temporary)) {
+                    properties.store(output, null);
+                }
+                try {
+                    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temporary);
+            }
+        } catch (IOException | RuntimeException e) {
+            logger.debug("Couldn't write the startup cache {}", file, e);
+        }
+    }
+
+    /**
+     * Removes the entry, e.g. because no detector is applicable anymore.
+     */
+    void clear() {
+        synchronized (this) {
+            pendingEntry.set(null);
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.debug("Couldn't delete the startup cache {}", file, e);
+            }
+        }
+    }
+
+    static boolean isSameProvider(@NotNull ThemeDetectorProvider provider, @NotNull ThemeDetectorProvider other) {
+        return providerId(provider).equals(providerId(other));
+    }
+
+    @NotNull
+    private static String providerId(@NotNull ThemeDetectorProvider provider) {
+        return provider instanceof BuiltInThemeDetectorProvider ?
+                BUILT_IN_PREFIX + ((BuiltInThemeDetectorProvider) provider).name() : provider.getClass().getName();
+    }
+
+    /**
+     * Looks up the provider without checking whether it is applicable; of the discovered providers
+     * only the matching one is instantiated.
+     *
+     * @return {@code null} if the provider isn't available anymore
+     */
+    @Nullable
+    static ThemeDetectorProvider findProvider(@NotNull String providerId) {
+        if (providerId.startsWith(BUILT_IN_PREFIX)) {
+            try {
+                return BuiltInThemeDetectorProvider.valueOf(providerId.substring(BUILT_IN_PREFIX.length()));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        try {
+            return ServiceLoader.load(ThemeDetectorProvider.class).stream()
+                    .filter(provider -> provider.type().getName().equals(providerId))
+                    .findFirst()
+                    .map(ServiceLoader.Provider::get)
+                    .orElse(null);
+        } catch (ServiceConfigurationError | RuntimeException | LinkageError e) {
+            logger.debug("Couldn't load the theme detector provider {}", providerId, e);
+            return null;
+        }
+    }
+
+    static final class Entry {
+
+        private final String providerId;
+        private final boolean dark;
+
+        Entry(@NotNull String providerId, boolean dark) {
+            this.providerId = providerId;
+            this.dark = dark;
+        }
+
+        @NotNull
+        String getProviderId() {
+            return providerId;
+        }
+
+        boolean isDark() {
+            return dark;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.jthemedetecor;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Creates the {@link OsThemeDetector} of a platform or desktop environment.
+ * <p>
+ * Besides the built-in ones, providers are discovered with {@link java.util.ServiceLoader}: declared with
+ * {@code provides com.jthemedetecor.ThemeDetectorProvider with ...} in a module, or listed in
+ * {@code META-INF/services/com.jthemedetecor.ThemeDetectorProvider} on the class path.
+ * {@link OsThemeDetector#getDetector()} asks the providers in descending order of their priorities
+ * and uses the first applicable one. The built-in providers of the platforms have priorities of at most 50,
+ * so a provider with a higher priority is preferred over them (only the {@link SimulatedThemeDetector},
+ * selected by a system property, precedes every provider).
+ */
+public interface ThemeDetectorProvider {
+
+    /**
+     * @return the priority of the provider; the providers with higher priorities are asked first
+     */
+    int priority();
+
+    /**
+     * Checks whether the detector of the provider can work on the running system. It should be cheap
+     * and mustn't load the platform-specific classes, as it is called for the providers that end up unused.
+     *
+     * @return {@code true} if the detector can be used
+     */
+    boolean isApplicable();
+
+    /**
+     * Creates the detector; only called if the provider is applicable. The checks too costly for
+     * {@link #isApplicable()}, like a round trip to a service, belong here: if the detector turns out
+     * to be unusable, a runtime exception hands the detection over to the next applicable provider.
+     */
+    @NotNull
+    OsThemeDetector create();
+
+    /**
+     * Checks whether the detector of the provider can work in the given session, see
+     * {@link OsThemeDetector#getDetector(SessionContext)}. By default the provider only supports
+     * the session of the running process.
+     *
+     * @return {@code true} if the detector can be used in the session
+     */
+    default boolean isApplicable(@NotNull SessionContext session) {
+        return session.isCurrent() && isApplicable();
+    }
+
+    /**
+     * Creates the detector of the given session; only called if the provider is applicable in the session.
+     */
+    @NotNull
+    default OsThemeDetector create(@NotNull SessionContext session) {
+        return create();
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.jthemedetecor;
+
+/**
+ * An immutable snapshot of the theme observed by an {@link OsThemeDetector}.
+ * The version is increased every time the observed theme changes.
+ */
+public final class ThemeState {
+
+    private final boolean dark;
+    private final long version;
+
+    ThemeState(boolean dark, long version) {
+        this.dark = dark;
+        this.version = version;
+    }
+
+    /**
+     * @return {@code true} if the os used a dark theme; {@code false} otherwise.
+     */
+    public boolean isDark() {
+        return dark;
+    }
+
+    /**
+     * @return the version of the state, see {@link OsThemeDetector#stateVersion()}
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ThemeState that = (ThemeState) o;
+        return dark == that.dark && version == that.version;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Boolean.hashCode(dark) + Long.hashCode(version);
+    }
+
+    @Override
+    public String toString() {
+        return "ThemeState{dark=" + dark + ", version=" + version + '}';
+    }
+}
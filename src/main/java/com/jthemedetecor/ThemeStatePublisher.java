@@ -0,0 +1,166 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.jthemedetecor;
+
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Publishes the theme states of a detector to {@link Flow.Subscriber}s.
+ * <p>
+ * Every subscriber first receives the current state, then the changes. A subscriber that has no
+ * outstanding demand doesn't receive the intermediate states: only the latest one is delivered
+ * once it requests more.
+ */
+final class ThemeStatePublisher implements Flow.Publisher<ThemeState> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ThemeStatePublisher.class);
+
+    private final OsThemeDetector detector;
+    private final Executor executor;
+
+    ThemeStatePublisher(@NotNull OsThemeDetector detector, @NotNull Executor executor) {
+        this.detector = detector;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ThemeState> subscriber) {
+        Objects.requireNonNull(subscriber);
+        final ThemeSubscription subscription = new ThemeSubscription(subscriber);
+        subscriber.onSubscribe(subscription);
+        // registering the listener can query the os, so it doesn't happen on the subscribing thread
+        executor.execute(subscription::start);
+    }
+
+    private final class ThemeSubscription implements Flow.Subscription, Consumer<Boolean> {
+
+        private final Flow.Subscriber<? super ThemeState> subscriber;
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicReference<ThemeState> pending = new AtomicReference<>();
+        private final AtomicInteger drainers = new AtomicInteger();
+
+        private volatile boolean cancelled;
+        private volatile Throwable error;
+        private long lastVersion;
+
+        ThemeSubscription(Flow.Subscriber<? super ThemeState> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void start() {
+            if (cancelled) {
+                return;
+            }
+            try {
+                detector.registerListener(this);
+                if (cancelled) {
+                    // cancel() has run since the check above, possibly before the registration it has to undo
+                    detector.removeListener(this);
+                    return;
+                }
+                final ThemeState current = detector.currentState();
+                offer(current != null ? current : detector.refreshState());
+            } catch (RuntimeException e) {
+                logger.error("Couldn't subscribe to the theme changes", e);
+                fail(e);
+            }
+        }
+
+        /**
+         * Called by the detector on a theme change.
+         */
+        @Override
+        public void accept(Boolean dark) {
+            final ThemeState current = detector.currentState();
+            if (current != null) {
+                offer(current);
+            }
+        }
+
+        private void offer(ThemeState state) {
+            pending.accumulateAndGet(state, (previous, next) ->
+                    previous == null || next.getVersion() >= previous.getVersion() ? next : previous);
+            drain();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                fail(new IllegalArgumentException("Non-positive request: " + n));
+                return;
+            }
+            demand.accumulateAndGet(n, (current, added) -> current + added < 0 ? Long.MAX_VALUE : current + added);
+            drain();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            detector.removeListener(this);
+        }
+
+        private void fail(Throwable throwable) {
+            error = throwable;
+            drain();
+        }
+
+        /**
+         * Delivers the signals on one thread at a time.
+         */
+        private void drain() {
+            if (drainers.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                if (!cancelled) {
+                    final Throwable failure = error;
+                    if (failure != null) {
+                        cancel();
+                        subscriber.onError(failure);
+                    } else if (demand.get() > 0) {
+                        final ThemeState state = pending.getAndSet(null);
+                        if (state != null && state.getVersion() > lastVersion) {
+                            lastVersion = state.getVersion();
+                            demand.decrementAndGet();
+                            deliver(state);
+                        }
+                    }
+                }
+                missed = drainers.addAndGet(-missed);
+            } while (missed != 0);
+        }
+
+        private void deliver(ThemeState state) {
+            try {
+                subscriber.onNext(state);
+            } catch (RuntimeException e) {
+                logger.error("Caught exception during subscriber notifying ", e);
+                cancel();
+                subscriber.onError(e);
+            }
+        }
+    }
+}
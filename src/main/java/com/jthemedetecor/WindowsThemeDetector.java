@@ -14,16 +14,10 @@
 
 package com.jthemedetecor;
 
-import com.jthemedetecor.util.ConcurrentHashSet;
 import com.sun.jna.platform.win32.*;
-import org.jetbrains.annotations.NotNull;
-import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Objects;
-import java.util.Set;
-import java.util.function.Consumer;
 
 /**
  * Determines the dark/light theme by the windows registry values through JNA.
@@ -39,39 +33,37 @@ class WindowsThemeDetector extends OsThemeDetector {
     private static final String REGISTRY_PATH = "Software\\Microsoft\\Windows\\CurrentVersion\\Themes\\Personalize";
     private static final String REGISTRY_VALUE = "AppsUseLightTheme";
 
-    private final Set<Consumer<Boolean>> listeners = new ConcurrentHashSet<>();
     private volatile DetectorThread detectorThread;
 
     WindowsThemeDetector() {
     }
 
     @Override
-    public boolean isDark() {
+    protected boolean queryDark() {
         return Advapi32Util.registryValueExists(WinReg.HKEY_CURRENT_USER, REGISTRY_PATH, REGISTRY_VALUE) &&
                 Advapi32Util.registryGetIntValue(WinReg.HKEY_CURRENT_USER, REGISTRY_PATH, REGISTRY_VALUE) == 0;
     }
 
-    @SuppressWarnings("DuplicatedCode")
     @Override
-    public synchronized void registerListener(@NotNull Consumer<Boolean> darkThemeListener) {
-        Objects.requireNonNull(darkThemeListener);
-        final boolean listenerAdded = listeners.add(darkThemeListener);
-        final boolean singleListener = listenerAdded && listeners.size() == 1;
-        final DetectorThread currentDetectorThread = detectorThread;
-        final boolean threadInterrupted = currentDetectorThread != null && currentDetectorThread.isInterrupted();
+    protected boolean isMonitoring() {
+        return detectorThread != null;
+    }
 
-        if (singleListener || threadInterrupted) {
+    @Override
+    protected void startMonitoring() {
+        final DetectorThread currentDetectorThread = detectorThread;
+        if (currentDetectorThread == null || currentDetectorThread.isInterrupted()) {
             final DetectorThread newDetectorThread = new DetectorThread(this);
             this.detectorThread = newDetectorThread;
-            newDetectorThread.start();
+            startMonitorTask(newDetectorThread);
         }
     }
 
     @Override
-    public synchronized void removeListener(@Nullable Consumer<Boolean> darkThemeListener) {
-        listeners.remove(darkThemeListener);
-        if (listeners.isEmpty()) {
-            this.detectorThread.interrupt();
+    protected void stopMonitoring() {
+        final DetectorThread currentDetectorThread = detectorThread;
+        if (currentDetectorThread != null) {
+            currentDetectorThread.interrupt();
             this.detectorThread = null;
         }
     }
@@ -79,48 +71,76 @@ class WindowsThemeDetector extends OsThemeDetector {
     /**
      * Thread implementation for detecting the theme changes
      */
-    private static final class DetectorThread extends Thread {
+    private static final class DetectorThread extends MonitorTask {
 
         private final WindowsThemeDetector themeDetector;
 
-        private boolean lastValue;
+        // signalled by the interruption, so the wait for the registry change ends; guarded by the lock,
+        // so it's never signalled after it has been closed (its handle value could have been reused by then)
+        private final Object stopEventLock = new Object();
+        private WinNT.HANDLE stopEvent;
 
         DetectorThread(WindowsThemeDetector themeDetector) {
+            super("Windows 10 Theme Detector Thread");
             this.themeDetector = themeDetector;
-            this.lastValue = themeDetector.isDark();
-            this.setName("Windows 10 Theme Detector Thread");
-            this.setDaemon(true);
-            this.setPriority(Thread.NORM_PRIORITY - 1);
+            themeDetector.refreshState();
+        }
+
+        @Override
+        void interrupt() {
+            super.interrupt();
+            synchronized (stopEventLock) {
+                if (stopEvent != null) {
+                    Kernel32.INSTANCE.SetEvent(stopEvent);
+                }
+            }
         }
 
         @Override
         public void run() {
+            try {
+                monitorRegistry();
+            } catch (Win32Exception e) {
+                logger.error("Couldn't monitor the registry ", e);
+                failed(e);
+            }
+        }
+
+        private void monitorRegistry() {
             WinReg.HKEYByReference hkey = new WinReg.HKEYByReference();
             int err = Advapi32.INSTANCE.RegOpenKeyEx(WinReg.HKEY_CURRENT_USER, REGISTRY_PATH, 0, WinNT.KEY_READ, hkey);
             if (err != W32Errors.ERROR_SUCCESS) {
                 throw new Win32Exception(err);
             }
-
-            while (!this.isInterrupted()) {
-                err = Advapi32.INSTANCE.RegNotifyChangeKeyValue(hkey.getValue(), false, WinNT.REG_NOTIFY_CHANGE_LAST_SET, null, false);
-                if (err != W32Errors.ERROR_SUCCESS) {
-                    throw new Win32Exception(err);
-                }
-
-                boolean currentDetection = themeDetector.isDark();
-                if (currentDetection != this.lastValue) {
-                    lastValue = currentDetection;
-                    logger.debug("Theme change detected: dark: {}", currentDetection);
-                    for (Consumer<Boolean> listener : themeDetector.listeners) {
-                        try {
-                            listener.accept(currentDetection);
-                        } catch (RuntimeException e) {
-                            logger.error("Caught exception during listener notifying ", e);
+            final WinNT.HANDLE changeEvent = Kernel32.INSTANCE.CreateEvent(null, false, false, null);
+            final WinNT.HANDLE currentStopEvent = Kernel32.INSTANCE.CreateEvent(null, true, false, null);
+            synchronized (stopEventLock) {
+                stopEvent = currentStopEvent;
+            }
+            try {
+                while (!this.isInterrupted()) {
+                    err = Advapi32.INSTANCE.RegNotifyChangeKeyValue(hkey.getValue(), false, WinNT.REG_NOTIFY_CHANGE_LAST_SET, changeEvent, true);
+                    if (err != W32Errors.ERROR_SUCCESS) {
+                        throw new Win32Exception(err);
+                    }
+                    final int signalled = Kernel32.INSTANCE.WaitForMultipleObjects(
+                            2, new WinNT.HANDLE[]{changeEvent, currentStopEvent}, false, WinBase.INFINITE);
+                    if (signalled != WinBase.WAIT_OBJECT_0) {
+                        if (signalled != WinBase.WAIT_OBJECT_0 + 1) {
+                            failed("WaitForMultipleObjects has failed: " + Kernel32.INSTANCE.GetLastError());
                         }
+                        break;
                     }
+                    themeDetector.onThemeDetected(themeDetector.queryDark());
+                }
+            } finally {
+                synchronized (stopEventLock) {
+                    stopEvent = null;
+                    Kernel32.INSTANCE.CloseHandle(currentStopEvent);
                 }
+                Kernel32.INSTANCE.CloseHandle(changeEvent);
+                Advapi32Util.registryCloseKey(hkey.getValue());
             }
-            Advapi32Util.registryCloseKey(hkey.getValue());
         }
     }
 }
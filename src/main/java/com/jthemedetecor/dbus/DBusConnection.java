@@ -0,0 +1,376 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.jthemedetecor.dbus;
+
+import com.jthemedetecor.util.UnixSockets;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A minimal client connection to a D-Bus message bus over a Unix-domain socket.
+ * <p>
+ * Only the {@code unix:path=...} transport and the {@code EXTERNAL} authentication mechanism are supported,
+ * which is what the session bus of the common desktops offers.
+ * A connection is meant to be used by one thread at a time.
+ */
+public final class DBusConnection implements Closeable {
+
+    public static final String SESSION_BUS_ADDRESS_VARIABLE = "DBUS_SESSION_BUS_ADDRESS";
+
+    private static final String BUS_NAME = "org.freedesktop.DBus";
+    private static final String BUS_PATH = "/org/freedesktop/DBus";
+    private static final int MAX_AUTH_LINE_LENGTH = 512;
+    private static final int MAX_UNHANDLED_MESSAGES = 64;
+
+    private final SocketChannel channel;
+    private final Selector selector;
+    private final Object writeLock = new Object();
+    private final Deque<DBusMessage> unhandledMessages = new ArrayDeque<>();
+    private final ByteBuffer fixedHeader = ByteBuffer.allocate(DBusMessage.fixedHeaderLength());
+
+    private long lastSerial;
+    private String uniqueName;
+
+    private DBusConnection(@NotNull SocketChannel channel) throws IOException {
+        this.channel = channel;
+        this.channel.configureBlocking(false);
+        this.selector = Selector.open();
+        this.channel.register(selector, SelectionKey.OP_READ);
+    }
+
+    /**
+     * @return {@code true} if the session bus address points to a socket this client can connect to
+     */
+    public static boolean isSessionBusAvailable() {
+        return isAvailable(System.getenv(SESSION_BUS_ADDRESS_VARIABLE));
+    }
+
+    /**
+     * Checks the address and the socket file of the bus without connecting to it.
+     *
+     * @return {@code true} if the bus with the given D-Bus server address can be connected to
+     */
+    public static boolean isAvailable(@Nullable String address) {
+        if (!UnixSockets.isSupported()) {
+            return false;
+        }
+        final Path socketPath = socketPath(address);
+        return socketPath != null && Files.exists(socketPath);
+    }
+
+    /**
+     * Connects to the session bus of the current user.
+     *
+     * @param timeoutMillis the maximum time that the authentication and the registration on the bus can take
+     */
+    @NotNull
+    public static DBusConnection openSessionBus(long timeoutMillis) throws IOException {
+        return open(System.getenv(SESSION_BUS_ADDRESS_VARIABLE), timeoutMillis);
+    }
+
+    /**
+     * Connects to the bus with the given D-Bus server address.
+     *
+     * @param timeoutMillis the maximum time that the authentication and the registration on the bus can take
+     */
+    @NotNull
+    public static DBusConnection open(@Nullable String address, long timeoutMillis) throws IOException {
+        final Path socketPath = socketPath(address);
+        if (socketPath == null) {
+            throw new IOException("Unsupported D-Bus address: " + address);
+        }
+        final DBusConnection connection = new DBusConnection(UnixSockets.connect(socketPath));
+        try {
+            connection.authenticate(timeoutMillis);
+            connection.hello(timeoutMillis);
+        } catch (IOException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+        return connection;
+    }
+
+    /**
+     * Extracts the socket path from the first {@code unix:path=...} entry of a D-Bus server address.
+     */
+    @Nullable
+    static Path socketPath(@Nullable String address) {
+        if (address == null) {
+            return null;
+        }
+        for (String entry : address.split(";")) {
+            if (!entry.startsWith("unix:")) {
+                continue;
+            }
+            for (String keyValue : entry.substring("unix:".length()).split(",")) {
+                if (keyValue.startsWith("path=")) {
+                    return Paths.get(unescape(keyValue.substring("path=".length())));
+                }
+            }
+        }
+        return null;
+    }
+
+    private static String unescape(String value) {
+        if (value.indexOf('%') < 0) {
+            return value;
+        }
+        final ByteBuffer bytes = ByteBuffer.allocate(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '%' && i + 2 < value.length()) {
+                bytes.put((byte) Integer.parseInt(value.substring(i + 1, i + 3), 16));
+                i += 2;
+            } else {
+                bytes.put((byte) c);
+            }
+        }
+        bytes.flip();
+        return StandardCharsets.UTF_8.decode(bytes).toString();
+    }
+
+    private void authenticate(long timeoutMillis) throws IOException {
+        final long deadline = deadline(timeoutMillis);
+        final String uid = String.valueOf(Files.getAttribute(Paths.get("/proc/self"), "unix:uid"));
+        writeFully(ByteBuffer.wrap(new byte[]{0}), deadline);
+        writeLine("AUTH EXTERNAL " + hex(uid), deadline);
+        final String reply = readLine(deadline);
+        if (!reply.startsWith("OK ")) {
+            throw new IOException("D-Bus authentication failed: " + reply);
+        }
+        writeLine("BEGIN", deadline);
+    }
+
+    private void hello(long timeoutMillis) throws IOException {
+        final DBusMessage reply = call(DBusMessage.methodCall(BUS_NAME, BUS_PATH, BUS_NAME, "Hello", ""), timeoutMillis);
+        uniqueName = (String) reply.getBody().get(0);
+    }
+
+    /**
+     * Asks the bus to route the signals matching the rule to this connection.
+     */
+    public void addMatch(@NotNull String rule, long timeoutMillis) throws IOException {
+        call(DBusMessage.methodCall(BUS_NAME, BUS_PATH, BUS_NAME, "AddMatch", "s", rule), timeoutMillis);
+    }
+
+    /**
+     * @return the unique name assigned to this connection by the bus
+     */
+    public String getUniqueName() {
+        return uniqueName;
+    }
+
+    /**
+     * Sends a method call and waits for its reply.
+     * Other messages arriving in the meantime are kept for {@link #receive(long)}.
+     *
+     * @return the method return message
+     * @throws DBusException if the reply is an error
+     */
+    @NotNull
+    public DBusMessage call(@NotNull DBusMessage methodCall, long timeoutMillis) throws IOException {
+        final long deadline = deadline(timeoutMillis);
+        final long serial = send(methodCall);
+        final Deque<DBusMessage> others = new ArrayDeque<>();
+        try {
+            while (true) {
+                final DBusMessage message = readMessage(deadline);
+                if (message.getReplySerial() == serial &&
+                        (message.getType() == DBusMessage.METHOD_RETURN || message.getType() == DBusMessage.ERROR)) {
+                    if (message.getType() == DBusMessage.ERROR) {
+                        throw new DBusException(message);
+                    }
+                    return message;
+                }
+                others.add(message);
+            }
+        } finally {
+            synchronized (unhandledMessages) {
+                unhandledMessages.addAll(others);
+                while (unhandledMessages.size() > MAX_UNHANDLED_MESSAGES) {
+                    unhandledMessages.poll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends the message.
+     *
+     * @return the serial assigned to the message
+     */
+    public long send(@NotNull DBusMessage message) throws IOException {
+        synchronized (writeLock) {
+            final long serial = ++lastSerial;
+            writeFully(message.encode(serial), 0);
+            return serial;
+        }
+    }
+
+    /**
+     * Waits for the next message that isn't a reply to a pending {@link #call(DBusMessage, long)}.
+     *
+     * @param timeoutMillis the maximum time to wait; {@code 0} means waiting indefinitely
+     * @throws SocketTimeoutException if no message arrived in time
+     * @throws InterruptedIOException if the waiting thread has been interrupted
+     */
+    @NotNull
+    public DBusMessage receive(long timeoutMillis) throws IOException {
+        synchronized (unhandledMessages) {
+            final DBusMessage message = unhandledMessages.poll();
+            if (message != null) {
+                return message;
+            }
+        }
+        return readMessage(deadline(timeoutMillis));
+    }
+
+    private synchronized DBusMessage readMessage(long deadline) throws IOException {
+        fixedHeader.clear();
+        readFully(fixedHeader, deadline);
+        final ByteBuffer message = ByteBuffer.allocate(DBusMessage.messageLength(fixedHeader));
+        fixedHeader.flip();
+        message.put(fixedHeader);
+        readFully(message, deadline);
+        message.flip();
+        return DBusMessage.decode(message);
+    }
+
+    private void readFully(ByteBuffer buffer, long deadline) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("D-Bus connection closed by the bus");
+            }
+            if (buffer.hasRemaining()) {
+                await(SelectionKey.OP_READ, deadline);
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer, long deadline) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+            if (buffer.hasRemaining()) {
+                await(SelectionKey.OP_WRITE, deadline);
+            }
+        }
+    }
+
+    private void await(int operation, long deadline) throws IOException {
+        // reading and writing can happen on different threads, so each wait uses its own selector
+        final Selector waitSelector = operation == SelectionKey.OP_READ ? selector : Selector.open();
+        try {
+            if (waitSelector != selector) {
+                channel.register(waitSelector, operation);
+            }
+            long timeout = 0;
+            if (deadline != 0) {
+                timeout = deadline - System.currentTimeMillis();
+                if (timeout <= 0) {
+                    throw new SocketTimeoutException("D-Bus operation timed out");
+                }
+            }
+            waitSelector.select(timeout);
+            waitSelector.selectedKeys().clear();
+            if (Thread.currentThread().isInterrupted()) {
+                throw new InterruptedIOException("Interrupted while waiting for the D-Bus connection");
+            }
+        } finally {
+            if (waitSelector != selector) {
+                waitSelector.close();
+            }
+        }
+    }
+
+    private void writeLine(String line, long deadline) throws IOException {
+        writeFully(ByteBuffer.wrap((line + "\r\n").getBytes(StandardCharsets.US_ASCII)), deadline);
+    }
+
+    private String readLine(long deadline) throws IOException {
+        final StringBuilder line = new StringBuilder();
+        final ByteBuffer single = ByteBuffer.allocate(1);
+        while (line.length() < MAX_AUTH_LINE_LENGTH) {
+            single.clear();
+            readFully(single, deadline);
+            final char c = (char) single.get(0);
+            if (c == '\n' && line.length() > 0 && line.charAt(line.length() - 1) == '\r') {
+                line.setLength(line.length() - 1);
+                return line.toString();
+            }
+            line.append(c);
+        }
+        throw new IOException("D-Bus authentication line is too long");
+    }
+
+    private static String hex(String value) {
+        final StringBuilder hex = new StringBuilder();
+        for (byte b : value.getBytes(StandardCharsets.US_ASCII)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+
+    private static long deadline(long timeoutMillis) {
+        return timeoutMillis <= 0 ? 0 : System.currentTimeMillis() + timeoutMillis;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            selector.close();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Thrown when a method call is answered with an error message.
+     */
+    public static final class DBusException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String errorName;
+
+        DBusException(@NotNull DBusMessage error) throws IOException {
+            super(error.getErrorName() + ": " + describe(error.getBody()));
+            this.errorName = error.getErrorName();
+        }
+
+        private static String describe(List<Object> body) {
+            return body.isEmpty() ? "" : String.valueOf(body.get(0));
+        }
+
+        public String getErrorName() {
+            return errorName;
+        }
+    }
+}
@@ -0,0 +1,608 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.jthemedetecor.dbus;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A message of the D-Bus wire protocol, with the (un)marshalling of the values it carries.
+ * <p>
+ * Values are represented as follows: {@code y} - {@link Byte}, {@code b} - {@link Boolean},
+ * {@code n q i} - {@link Integer}, {@code u x t h} - {@link Long}, {@code d} - {@link Double},
+ * {@code s o g} - {@link String}, {@code v} - {@link Variant}, {@code a} - {@link List},
+ * structs and dict entries - {@code Object[]}.
+ */
+public final class DBusMessage {
+
+    public static final byte METHOD_CALL = 1;
+    public static final byte METHOD_RETURN = 2;
+    public static final byte ERROR = 3;
+    public static final byte SIGNAL = 4;
+
+    public static final byte FLAG_NO_REPLY_EXPECTED = 0x1;
+
+    private static final byte PROTOCOL_VERSION = 1;
+    private static final int FIXED_HEADER_LENGTH = 16;
+    private static final int MAX_MESSAGE_LENGTH = 1 << 27;
+
+    private static final byte FIELD_PATH = 1;
+    private static final byte FIELD_INTERFACE = 2;
+    private static final byte FIELD_MEMBER = 3;
+    private static final byte FIELD_ERROR_NAME = 4;
+    private static final byte FIELD_REPLY_SERIAL = 5;
+    private static final byte FIELD_DESTINATION = 6;
+    private static final byte FIELD_SENDER = 7;
+    private static final byte FIELD_SIGNATURE = 8;
+
+    private final byte type;
+    private byte flags;
+    private long serial;
+    private String path;
+    private String interfaceName;
+    private String member;
+    private String errorName;
+    private long replySerial;
+    private String destination;
+    private String sender;
+    private String signature = "";
+    private List<Object> body = Collections.emptyList();
+
+    // the raw body of a received message, unmarshalled on demand
+    private ByteBuffer rawBody;
+
+    private DBusMessage(byte type) {
+        this.type = type;
+    }
+
+    @NotNull
+    public static DBusMessage methodCall(@Nullable String destination,
+                                         @NotNull String path,
+                                         @Nullable String interfaceName,
+                                         @NotNull String member,
+                                         @NotNull String signature,
+                                         Object... args) {
+        DBusMessage message = new DBusMessage(METHOD_CALL);
+        message.destination = destination;
+        message.path = path;
+        message.interfaceName = interfaceName;
+        message.member = member;
+        return message.withBody(signature, args);
+    }
+
+    @NotNull
+    public static DBusMessage methodReturn(@NotNull DBusMessage call, @NotNull String signature, Object... args) {
+        DBusMessage message = new DBusMessage(METHOD_RETURN);
+        message.replySerial = call.serial;
+        message.destination = call.sender;
+        return message.withBody(signature, args);
+    }
+
+    @NotNull
+    public static DBusMessage error(@NotNull DBusMessage call, @NotNull String errorName, @NotNull String text) {
+        DBusMessage message = new DBusMessage(ERROR);
+        message.replySerial = call.serial;
+        message.destination = call.sender;
+        message.errorName = errorName;
+        return message.withBody("s", new Object[]{text});
+    }
+
+    @NotNull
+    public static DBusMessage signal(@NotNull String path,
+                                     @NotNull String interfaceName,
+                                     @NotNull String member,
+                                     @NotNull String signature,
+                                     Object... args) {
+        DBusMessage message = new DBusMessage(SIGNAL);
+        message.path = path;
+        message.interfaceName = interfaceName;
+        message.member = member;
+        return message.withBody(signature, args);
+    }
+
+    private DBusMessage withBody(String signature, Object[] args) {
+        this.signature = signature;
+        this.body = Collections.unmodifiableList(Arrays.asList(args));
+        return this;
+    }
+
+    public byte getType() {
+        return type;
+    }
+
+    public long getSerial() {
+        return serial;
+    }
+
+    public long getReplySerial() {
+        return replySerial;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public String getInterface() {
+        return interfaceName;
+    }
+
+    public String getMember() {
+        return member;
+    }
+
+    public String getErrorName() {
+        return errorName;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    public String getSender() {
+        return sender;
+    }
+
+    public void setSender(String sender) {
+        this.sender = sender;
+    }
+
+    @NotNull
+    public String getSignature() {
+        return signature;
+    }
+
+    public void setNoReplyExpected() {
+        this.flags |= FLAG_NO_REPLY_EXPECTED;
+    }
+
+    public boolean isNoReplyExpected() {
+        return (flags & FLAG_NO_REPLY_EXPECTED) != 0;
+    }
+
+    /**
+     * @return the arguments carried by the message
+     * @throws IOException if the body of a received message is malformed
+     */
+    @NotNull
+    public List<Object> getBody() throws IOException {
+        if (rawBody != null) {
+            Reader reader = new Reader(rawBody);
+            List<Object> values = new ArrayList<>();
+            try {
+                int index = 0;
+                while (index < signature.length()) {
+                    int end = endOfType(signature, index);
+                    values.add(reader.read(signature.substring(index, end)));
+                    index = end;
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Malformed D-Bus message body", e);
+            }
+            body = Collections.unmodifiableList(values);
+            rawBody = null;
+        }
+        return body;
+    }
+
+    /**
+     * Marshals the message with the given serial into a little-endian byte buffer ready for writing.
+     */
+    @NotNull
+    public ByteBuffer encode(long serial) {
+        this.serial = serial;
+
+        Writer bodyWriter = new Writer();
+        int index = 0;
+        for (Object value : body) {
+            int end = endOfType(signature, index);
+            bodyWriter.write(signature.substring(index, end), value);
+            index = end;
+        }
+        if (index != signature.length()) {
+            throw new IllegalArgumentException("Signature '" + signature + "' doesn't match the arguments");
+        }
+
+        List<Object[]> fields = new ArrayList<>();
+        addField(fields, FIELD_PATH, "o", path);
+        addField(fields, FIELD_INTERFACE, "s", interfaceName);
+        addField(fields, FIELD_MEMBER, "s", member);
+        addField(fields, FIELD_ERROR_NAME, "s", errorName);
+        addField(fields, FIELD_REPLY_SERIAL, "u", replySerial == 0 ? null : replySerial);
+        addField(fields, FIELD_DESTINATION, "s", destination);
+        addField(fields, FIELD_SENDER, "s", sender);
+        addField(fields, FIELD_SIGNATURE, "g", signature.isEmpty() ? null : signature);
+
+        Writer writer = new Writer();
+        writer.write("y", (byte) 'l');
+        writer.write("y", type);
+        writer.write("y", flags);
+        writer.write("y", PROTOCOL_VERSION);
+        writer.write("u", (long) bodyWriter.length());
+        writer.write("u", serial);
+        writer.write("a(yv)", fields);
+        writer.align(8);
+        writer.append(bodyWriter);
+        return writer.toByteBuffer();
+    }
+
+    private static void addField(List<Object[]> fields, byte code, String signature, Object value) {
+        if (value != null) {
+            fields.add(new Object[]{code, new Variant(signature, value)});
+        }
+    }
+
+    /**
+     * @return the total length of the message whose first 16 bytes are in the given buffer
+     */
+    public static int messageLength(@NotNull ByteBuffer fixedHeader) throws IOException {
+        ByteBuffer header = fixedHeader.duplicate().order(byteOrder(fixedHeader.get(0)));
+        long bodyLength = header.getInt(4) & 0xFFFFFFFFL;
+        long fieldsLength = header.getInt(12) & 0xFFFFFFFFL;
+        long length = align(FIXED_HEADER_LENGTH + fieldsLength, 8) + bodyLength;
+        if (length > MAX_MESSAGE_LENGTH) {
+            throw new IOException("D-Bus message is too long: " + length);
+        }
+        return (int) length;
+    }
+
+    public static int fixedHeaderLength() {
+        return FIXED_HEADER_LENGTH;
+    }
+
+    /**
+     * Unmarshals a complete message.
+     */
+    @NotNull
+    public static DBusMessage decode(@NotNull ByteBuffer buffer) throws IOException {
+        buffer.order(byteOrder(buffer.get(0)));
+        try {
+            return decodeHeader(buffer);
+        } catch (IllegalArgumentException | ClassCastException e) {
+            throw new IOException("Malformed D-Bus message header", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static DBusMessage decodeHeader(ByteBuffer buffer) throws IOException {
+        Reader reader = new Reader(buffer);
+        reader.read("y");
+        DBusMessage message = new DBusMessage((Byte) reader.read("y"));
+        message.flags = (Byte) reader.read("y");
+        reader.read("y");
+        long bodyLength = (Long) reader.read("u");
+        message.serial = (Long) reader.read("u");
+        for (Object field : (List<Object>) reader.read("a(yv)")) {
+            Object[] struct = (Object[]) field;
+            Object value = ((Variant) struct[1]).getValue();
+            switch ((Byte) struct[0]) {
+                case FIELD_PATH: message.path = (String) value; break;
+                case FIELD_INTERFACE: message.interfaceName = (String) value; break;
+                case FIELD_MEMBER: message.member = (String) value; break;
+                case FIELD_ERROR_NAME: message.errorName = (String) value; break;
+                case FIELD_REPLY_SERIAL: message.replySerial = (Long) value; break;
+                case FIELD_DESTINATION: message.destination = (String) value; break;
+                case FIELD_SENDER: message.sender = (String) value; break;
+                case FIELD_SIGNATURE: message.signature = (String) value; break;
+                default: break;
+            }
+        }
+        reader.align(8);
+        if (reader.remaining() != bodyLength) {
+            throw new IOException("D-Bus message body length mismatch");
+        }
+        message.rawBody = reader.rest();
+        return message;
+    }
+
+    private static ByteOrder byteOrder(byte endianness) throws IOException {
+        switch (endianness) {
+            case 'l': return ByteOrder.LITTLE_ENDIAN;
+            case 'B': return ByteOrder.BIG_ENDIAN;
+            default: throw new IOException("Invalid D-Bus endianness flag: " + endianness);
+        }
+    }
+
+    private static long align(long position, int alignment) {
+        return (position + alignment - 1) & -alignment;
+    }
+
+    private static int alignment(char type) {
+        switch (type) {
+            case 'n': case 'q': return 2;
+            case 'b': case 'i': case 'u': case 'h': case 's': case 'o': case 'a': return 4;
+            case 'x': case 't': case 'd': case '(': case '{': return 8;
+            default: return 1;
+        }
+    }
+
+    /**
+     * @return the index right after the single complete type starting at the given index
+     */
+    private static int endOfType(String signature, int index) {
+        if (index >= signature.length()) {
+            throw new IllegalArgumentException("Incomplete signature: " + signature);
+        }
+        char c = signature.charAt(index);
+        if (c == 'a') {
+            return endOfType(signature, index + 1);
+        }
+        if (c == '(' || c == '{') {
+            char close = c == '(' ? ')' : '}';
+            int i = index + 1;
+            while (i < signature.length() && signature.charAt(i) != close) {
+                i = endOfType(signature, i);
+            }
+            if (i >= signature.length()) {
+                throw new IllegalArgumentException("Unbalanced signature: " + signature);
+            }
+            return i + 1;
+        }
+        return index + 1;
+    }
+
+    @Override
+    public String toString() {
+        return "DBusMessage{type=" + type + ", serial=" + serial + ", replySerial=" + replySerial +
+                ", path=" + path + ", interface=" + interfaceName + ", member=" + member +
+                ", errorName=" + errorName + ", signature=" + signature + '}';
+    }
+
+    /**
+     * A value together with its signature.
+     */
+    public static final class Variant {
+        private final String signature;
+        private final Object value;
+
+        public Variant(@NotNull String signature, @NotNull Object value) {
+            this.signature = signature;
+            this.value = value;
+        }
+
+        @NotNull
+        public String getSignature() {
+            return signature;
+        }
+
+        @NotNull
+        public Object getValue() {
+            return value;
+        }
+
+        /**
+         * @return the innermost value, if this variant wraps further variants
+         */
+        @NotNull
+        public Object unwrap() {
+            Object current = value;
+            while (current instanceof Variant) {
+                current = ((Variant) current).value;
+            }
+            return current;
+        }
+
+        @Override
+        public String toString() {
+            return "<" + signature + ">" + value;
+        }
+    }
+
+    private static final class Writer {
+        private ByteBuffer buffer = ByteBuffer.allocate(128).order(ByteOrder.LITTLE_ENDIAN);
+
+        int length() {
+            return buffer.position();
+        }
+
+        void align(int alignment) {
+            int padding = (int) (DBusMessage.align(buffer.position(), alignment) - buffer.position());
+            ensure(padding);
+            for (int i = 0; i < padding; i++) {
+                buffer.put((byte) 0);
+            }
+        }
+
+        void append(Writer other) {
+            ensure(other.length());
+            buffer.put(other.buffer.array(), 0, other.length());
+        }
+
+        ByteBuffer toByteBuffer() {
+            ByteBuffer result = buffer.duplicate();
+            result.flip();
+            return result;
+        }
+
+        private void ensure(int bytes) {
+            if (buffer.remaining() < bytes) {
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes))
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                buffer.flip();
+                bigger.put(buffer);
+                buffer = bigger;
+            }
+        }
+
+        void write(String type, Object value) {
+            char c = type.charAt(0);
+            align(alignment(c));
+            switch (c) {
+                case 'y': ensure(1); buffer.put(((Number) value).byteValue()); break;
+                case 'b': ensure(4); buffer.putInt(((Boolean) value) ? 1 : 0); break;
+                case 'n': case 'q': ensure(2); buffer.putShort(((Number) value).shortValue()); break;
+                case 'i': case 'u': case 'h': ensure(4); buffer.putInt(((Number) value).intValue()); break;
+                case 'x': case 't': ensure(8); buffer.putLong(((Number) value).longValue()); break;
+                case 'd': ensure(8); buffer.putDouble(((Number) value).doubleValue()); break;
+                case 's': case 'o': {
+                    byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+                    ensure(5 + bytes.length);
+                    buffer.putInt(bytes.length).put(bytes).put((byte) 0);
+                    break;
+                }
+                case 'g': {
+                    byte[] bytes = ((String) value).getBytes(StandardCharsets.US_ASCII);
+                    ensure(2 + bytes.length);
+                    buffer.put((byte) bytes.length).put(bytes).put((byte) 0);
+                    break;
+                }
+                case 'v': {
+                    Variant variant = (Variant) value;
+                    write("g", variant.signature);
+                    write(variant.signature, variant.value);
+                    break;
+                }
+                case 'a': {
+                    String elementType = type.substring(1);
+                    ensure(4);
+                    int lengthPosition = buffer.position();
+                    buffer.putInt(0);
+                    align(alignment(elementType.charAt(0)));
+                    int start = buffer.position();
+                    for (Object element : (List<?>) value) {
+                        write(elementType, element);
+                    }
+                    buffer.putInt(lengthPosition, buffer.position() - start);
+                    break;
+                }
+                case '(': case '{': {
+                    Object[] fields = (Object[]) value;
+                    int index = 1;
+                    for (Object field : fields) {
+                        int end = endOfType(type, index);
+                        write(type.substring(index, end), field);
+                        index = end;
+                    }
+                    break;
+                }
+                default:
+                    throw new IllegalArgumentException("Unsupported D-Bus type: " + type);
+            }
+        }
+    }
+
+    private static final class Reader {
+        private final ByteBuffer buffer;
+        private final int origin;
+
+        Reader(ByteBuffer buffer) {
+            this.buffer = buffer;
+            this.origin = buffer.position();
+        }
+
+        int remaining() {
+            return buffer.remaining();
+        }
+
+        ByteBuffer rest() {
+            return buffer.slice().order(buffer.order());
+        }
+
+        void align(int alignment) throws IOException {
+            int offset = buffer.position() - origin;
+            int target = (int) DBusMessage.align(offset, alignment);
+            skip(target - offset);
+        }
+
+        private void skip(int bytes) throws IOException {
+            require(bytes);
+            buffer.position(buffer.position() + bytes);
+        }
+
+        private void require(long bytes) throws IOException {
+            if (bytes < 0 || buffer.remaining() < bytes) {
+                throw new IOException("Truncated D-Bus message");
+            }
+        }
+
+        Object read(String type) throws IOException {
+            char c = type.charAt(0);
+            align(alignment(c));
+            switch (c) {
+                case 'y': require(1); return buffer.get();
+                case 'b': require(4); return buffer.getInt() != 0;
+                case 'n': require(2); return (int) buffer.getShort();
+                case 'q': require(2); return buffer.getShort() & 0xFFFF;
+                case 'i': require(4); return buffer.getInt();
+                case 'u': case 'h': require(4); return buffer.getInt() & 0xFFFFFFFFL;
+                case 'x': case 't': require(8); return buffer.getLong();
+                case 'd': require(8); return buffer.getDouble();
+                case 's': case 'o': {
+                    require(4);
+                    long length = buffer.getInt() & 0xFFFFFFFFL;
+                    return readString(length, StandardCharsets.UTF_8);
+                }
+                case 'g': {
+                    require(1);
+                    return readString(buffer.get() & 0xFF, StandardCharsets.US_ASCII);
+                }
+                case 'v': {
+                    String signature = (String) read("g");
+                    if (signature.isEmpty() || endOfType(signature, 0) != signature.length()) {
+                        throw new IOException("Invalid variant signature: " + signature);
+                    }
+                    return new Variant(signature, read(signature));
+                }
+                case 'a': {
+                    String elementType = type.substring(1);
+                    require(4);
+                    long length = buffer.getInt() & 0xFFFFFFFFL;
+                    align(alignment(elementType.charAt(0)));
+                    require(length);
+                    int end = buffer.position() + (int) length;
+                    List<Object> elements = new ArrayList<>();
+                    while (buffer.position() < end) {
+                        elements.add(read(elementType));
+                    }
+                    if (buffer.position() != end) {
+                        throw new IOException("Malformed D-Bus array");
+                    }
+                    return elements;
+                }
+                case '(': case '{': {
+                    List<Object> fields = new ArrayList<>();
+                    int index = 1;
+                    while (type.charAt(index) != ')' && type.charAt(index) != '}') {
+                        int end = endOfType(type, index);
+                        fields.add(read(type.substring(index, end)));
+                        index = end;
+                    }
+                    return fields.toArray();
+                }
+                default:
+                    throw new IOException("Unsupported D-Bus type: " + type);
+            }
+        }
+
+        private String readString(long length, Charset charset) throws IOException {
+            require(length + 1);
+            byte[] bytes = new byte[(int) length];
+            buffer.get(bytes);
+            if (buffer.get() != 0) {
+                throw new IOException("D-Bus string is not nul-terminated");
+            }
+            return new String(bytes, charset);
+        }
+    }
+}
@@ -1,103 +0,0 @@
-/*
- * Licensed under the Apache License, Version 2.0 (the "License");
- *  you may not use this file except in compliance with the License.
- *  You may obtain a copy of the License at
- *
- *          http://www.apache.org/licenses/LICENSE-2.0
- *
- *   Unless required by applicable law or agreed to in writing, software
- *   distributed under the License is distributed on an "AS IS" BASIS,
- *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- *   See the License for the specific language governing permissions and
- *   limitations under the License.
- */
-
-package com.jthemedetecor.util;
-
-import java.util.Collection;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
-
-public class ConcurrentHashSet<E> implements Set<E> {
-
-    private final Map<E, Object> map;
-
-    private static final Object OBJ = new Object();
-
-    public ConcurrentHashSet() {
-        map = new ConcurrentHashMap<>();
-    }
-
-    @Override
-    public int size() {
-        return map.size();
-    }
-
-    @Override
-    public boolean isEmpty() {
-        return map.isEmpty();
-    }
-
-    @Override
-    public boolean contains(Object o) {
-        return map.containsKey(o);
-    }
-
-    @Override
-    public Iterator<E> iterator() {
-        return map.keySet().iterator();
-    }
-
-    @Override
-    public Object[] toArray() {
-        return map.keySet().toArray();
-    }
-
-    @Override
-    public <T> T[] toArray(T[] a) {
-        return map.keySet().toArray(a);
-    }
-
-    @Override
-    public boolean add(E e) {
-        return map.put(e, OBJ) == null;
-    }
-
-    @Override
-    public boolean remove(Object o) {
-        return map.remove(o) != null;
-    }
-
-    @Override
-    public boolean containsAll(Collection<?> c) {
-        return map.keySet().containsAll(c);
-    }
-
-    @Override
-    public boolean addAll(Collection<? extends E> c) {
-        boolean changed = false;
-        for (E e: c) {
-            if (map.put(e, OBJ) == null) {
-                changed = true;
-            }
-        }
-        return changed;
-    }
-
-    @Override
-    public boolean retainAll(Collection<?> c) {
-        throw new UnsupportedOperationException();
-    }
-
-    @Override
-    public boolean removeAll(Collection<?> c) {
-        throw new UnsupportedOperationException();
-    }
-
-    @Override
-    public void clear() {
-        map.clear();
-    }
-}
\ No newline at end of file
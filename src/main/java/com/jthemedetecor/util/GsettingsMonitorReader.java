@@ -0,0 +1,237 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+
+package com.jthemedetecor.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the {@code key: value} records printed by {@code gsettings monitor <schema>} (e.g. {@code gtk-theme: 'Adwaita'})
+ * from the output of the process.
+ * <p>
+ * The records are recognized in a reusable byte buffer: reading and comparing them allocates nothing, only
+ * {@link #key()} and {@link #value()} create strings. Malformed lines (an invalid key, a missing separator,
+ * an unterminated quoted value, a line longer than {@value #MAX_RECORD_LENGTH} bytes, or an incomplete last line)
+ * are skipped.
+ * <p>
+ * The value is kept as printed, in the GVariant text format (strings quoted, numbers and booleans as they are).
+ */
+public final class GsettingsMonitorReader {
+
+    public static final int MAX_RECORD_LENGTH = 64 * 1024;
+
+    private static final int INITIAL_BUFFER_SIZE = 4096;
+
+    private final InputStream input;
+
+    private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
+    // the unread bytes are [position, limit)
+    private int position;
+    private int limit;
+    // true while the rest of an overlong line is being skipped
+    private boolean discarding;
+
+    private int keyStart;
+    private int keyEnd;
+    private int valueStart;
+    private int valueEnd;
+
+    private long skippedRecords;
+
+    public GsettingsMonitorReader(@NotNull InputStream input) {
+        this.input = input;
+    }
+
+    /**
+     * Reads the next well-formed record, blocking until it's available. The previous record is no longer
+     * accessible afterwards.
+     *
+     * @return {@code false} if the output has ended
+     */
+    public boolean next() throws IOException {
+        // the bytes of [position, scanned) are known not to be line breaks
+        int scanned = position;
+        while (true) {
+            while (scanned < limit) {
+                if (buffer[scanned++] == '\n') {
+                    final int lineStart = position;
+                    position = scanned;
+                    if (discarding) {
+                        discarding = false;
+                    } else if (parse(lineStart, scanned - 1)) {
+                        return true;
+                    } else {
+                        skippedRecords++;
+                    }
+                }
+            }
+            if (limit - position == MAX_RECORD_LENGTH) {
+                // the line is too long to be a record, the rest of it is skipped
+                if (!discarding) {
+                    discarding = true;
+                    skippedRecords++;
+                }
+                position = limit;
+            }
+            final int pending = limit - position;
+            if (!fill()) {
+                break;
+            }
+            scanned = position + pending;
+        }
+        // a last line without a line break is incomplete, e.g. the process was killed while printing it
+        if (position < limit && !discarding) {
+            skippedRecords++;
+        }
+        position = limit;
+        return false;
+    }
+
+    /**
+     * Reads more bytes, compacting or growing the buffer as needed.
+     *
+     * @return {@code false} at the end of the input
+     */
+    private boolean fill() throws IOException {
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            position = 0;
+        }
+        if (limit == buffer.length) {
+            final byte[] grown = new byte[Math.min(buffer.length * 2, MAX_RECORD_LENGTH)];
+            System.arraycopy(buffer, 0, grown, 0, limit);
+            buffer = grown;
+        }
+        final int read = input.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            return false;
+        }
+        limit += read;
+        return true;
+    }
+
+    /**
+     * Recognizes a record in the line {@code [start, end)}.
+     */
+    private boolean parse(int start, int end) {
+        if (end > start && buffer[end - 1] == '\r') {
+            end--;
+        }
+        int i = start;
+        if (i == end || !isKeyStart(buffer[i])) {
+            return false;
+        }
+        while (i < end && isKeyPart(buffer[i])) {
+            i++;
+        }
+        final int separator = i;
+        if (end - separator < 3 || buffer[separator] != ':' || buffer[separator + 1] != ' ') {
+            return false;
+        }
+        final int value = separator + 2;
+        if (!isValue(value, end)) {
+            return false;
+        }
+        keyStart = start;
+        keyEnd = separator;
+        valueStart = value;
+        valueEnd = end;
+        return true;
+    }
+
+    /**
+     * A quoted value has to end with its closing quote; other values are taken as they are.
+     */
+    private boolean isValue(int start, int end) {
+        final byte quote = buffer[start];
+        if (quote != '\'' && quote != '"') {
+            return buffer[start] != ' ';
+        }
+        int i = start + 1;
+        while (i < end) {
+            final byte b = buffer[i];
+            if (b == '\\') {
+                i += 2;
+            } else if (b == quote) {
+                return i == end - 1;
+            } else {
+                i++;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isKeyStart(byte b) {
+        return b >= 'a' && b <= 'z';
+    }
+
+    private static boolean isKeyPart(byte b) {
+        return b >= 'a' && b <= 'z' || b >= '0' && b <= '9' || b == '-';
+    }
+
+    /**
+     * @return {@code true} if the key of the current record is the given one
+     */
+    public boolean keyEquals(@NotNull String key) {
+        return regionEquals(keyStart, keyEnd, key);
+    }
+
+    /**
+     * @return {@code true} if the value of the current record is the given one
+     */
+    public boolean valueEquals(@NotNull String value) {
+        return regionEquals(valueStart, valueEnd, value);
+    }
+
+    private boolean regionEquals(int start, int end, String string) {
+        final int length = end - start;
+        if (length < string.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            final byte b = buffer[start + i];
+            if (b < 0) {
+                // not ASCII, compared as decoded
+                return string.equals(new String(buffer, start, length, StandardCharsets.UTF_8));
+            }
+            if (i >= string.length() || b != string.charAt(i)) {
+                return false;
+            }
+        }
+        return length == string.length();
+    }
+
+    @NotNull
+    public String key() {
+        return new String(buffer, keyStart, keyEnd - keyStart, StandardCharsets.US_ASCII);
+    }
+
+    @NotNull
+    public String value() {
+        return new String(buffer, valueStart, valueEnd - valueStart, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the number of malformed lines skipped so far
+     */
+    public long getSkippedRecords() {
+        return skippedRecords;
+    }
+}
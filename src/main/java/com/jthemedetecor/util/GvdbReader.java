@@ -0,0 +1,200 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.jthemedetecor.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the root hash table of a memory-mapped GVDB file, the format of the dconf databases
+ * (e.g. {@code ~/.config/dconf/user}).
+ * <p>
+ * Lookups work on the mapped bytes directly; only the returned values are allocated.
+ */
+public final class GvdbReader {
+
+    private static final int HEADER_SIZE = 24;
+    private static final int HASH_HEADER_SIZE = 8;
+    private static final int ITEM_SIZE = 24;
+    private static final int NO_PARENT = 0xFFFFFFFF;
+    private static final int BLOOM_WORDS_MASK = (1 << 27) - 1;
+    private static final byte VALUE_TYPE = 'v';
+
+    private static final byte[] SIGNATURE = "GVariant".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SWAPPED_SIGNATURE = "raVGtnai".getBytes(StandardCharsets.US_ASCII);
+
+    private final ByteBuffer data;
+    private final int bucketsStart;
+    private final int bucketCount;
+    private final int itemsStart;
+    private final int itemCount;
+
+    GvdbReader(@NotNull ByteBuffer data) throws IOException {
+        this.data = data;
+        if (data.limit() < HEADER_SIZE) {
+            throw new IOException("GVDB file is too short");
+        }
+        if (startsWith(data, SIGNATURE)) {
+            data.order(ByteOrder.LITTLE_ENDIAN);
+        } else if (startsWith(data, SWAPPED_SIGNATURE)) {
+            data.order(ByteOrder.BIG_ENDIAN);
+        } else {
+            throw new IOException("Not a GVDB file");
+        }
+
+        final long rootStart = unsigned(data.getInt(16));
+        final long rootEnd = unsigned(data.getInt(20));
+        if (rootStart > rootEnd || rootEnd > data.limit() || rootStart % 4 != 0) {
+            throw new IOException("Invalid GVDB root table pointer");
+        }
+        if (rootEnd - rootStart < HASH_HEADER_SIZE) {
+            bucketsStart = itemsStart = (int) rootStart;
+            bucketCount = itemCount = 0;
+            return;
+        }
+
+        final long bloomWords = data.getInt((int) rootStart) & BLOOM_WORDS_MASK;
+        final long buckets = unsigned(data.getInt((int) rootStart + 4));
+        final long bucketsOffset = rootStart + HASH_HEADER_SIZE + bloomWords * 4;
+        final long itemsOffset = bucketsOffset + buckets * 4;
+        if (itemsOffset > rootEnd) {
+            throw new IOException("Invalid GVDB hash table");
+        }
+        bucketsStart = (int) bucketsOffset;
+        bucketCount = (int) buckets;
+        itemsStart = (int) itemsOffset;
+        itemCount = (int) ((rootEnd - itemsOffset) / ITEM_SIZE);
+    }
+
+    /**
+     * Maps the file into the memory. The mapping stays valid even if the file is replaced afterwards.
+     */
+    @NotNull
+    public static GvdbReader open(@NotNull Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new GvdbReader(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Looks up a string value.
+     *
+     * @param key the UTF-8 encoded key, e.g. {@code /org/gnome/desktop/interface/gtk-theme}
+     * @return the value, or {@code null} if the key is not present or its value isn't a string
+     */
+    @Nullable
+    public String getString(@NotNull byte[] key) {
+        final int item = lookup(key);
+        if (item < 0 || data.get(item + 14) != VALUE_TYPE) {
+            return null;
+        }
+        final long start = unsigned(data.getInt(item + 16));
+        final long end = unsigned(data.getInt(item + 20));
+        // the value is a serialized GVariant of type 'v': the child value, a zero byte, then the child type;
+        // a serialized string is nul-terminated as well
+        if (end - start < 3 || end > data.limit() ||
+                data.get((int) end - 1) != 's' || data.get((int) end - 2) != 0 || data.get((int) end - 3) != 0) {
+            return null;
+        }
+        final byte[] bytes = new byte[(int) (end - start) - 3];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = data.get((int) start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the offset of the hash item with the key; {@code -1} if there is no such item
+     */
+    private int lookup(byte[] key) {
+        if (bucketCount == 0) {
+            return -1;
+        }
+        final int hash = hash(key);
+        final int bucket = Integer.remainderUnsigned(hash, bucketCount);
+        final long first = unsigned(data.getInt(bucketsStart + bucket * 4));
+        final long last = bucket == bucketCount - 1 ? itemCount :
+                Math.min(unsigned(data.getInt(bucketsStart + (bucket + 1) * 4)), itemCount);
+        for (long index = first; index < last; index++) {
+            final int item = itemOffset((int) index);
+            if (data.getInt(item) == hash && hasName(item, key)) {
+                return item;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Checks the key of an item; keys are stored as chains of suffixes pointing to their parent items.
+     */
+    private boolean hasName(int item, byte[] key) {
+        int remaining = key.length;
+        for (int depth = 0; depth <= itemCount; depth++) {
+            final long keyStart = unsigned(data.getInt(item + 8));
+            final int keySize = data.getShort(item + 12) & 0xFFFF;
+            if (keySize > remaining || keyStart + keySize > data.limit()) {
+                return false;
+            }
+            remaining -= keySize;
+            for (int i = 0; i < keySize; i++) {
+                if (data.get((int) keyStart + i) != key[remaining + i]) {
+                    return false;
+                }
+            }
+            final int parent = data.getInt(item + 4);
+            if (remaining == 0) {
+                return parent == NO_PARENT;
+            }
+            if (Integer.compareUnsigned(parent, itemCount) >= 0) {
+                return false;
+            }
+            item = itemOffset(parent);
+        }
+        return false;
+    }
+
+    private int itemOffset(int index) {
+        return itemsStart + index * ITEM_SIZE;
+    }
+
+    private static int hash(byte[] key) {
+        int hash = 5381;
+        for (byte b : key) {
+            hash = hash * 33 + b;
+        }
+        return hash;
+    }
+
+    private static boolean startsWith(ByteBuffer data, byte[] prefix) {
+        for (int i = 0; i < prefix.length; i++) {
+            if (data.get(i) != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long unsigned(int value) {
+        return value & 0xFFFFFFFFL;
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.jthemedetecor.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * The color settings of KDE Plasma, read from the {@code kdeglobals} file (e.g. {@code ~/.config/kdeglobals}).
+ * <p>
+ * Only the {@code [General] ColorScheme} and the {@code [Colors:Window] BackgroundNormal} keys are
+ * kept, and the reading stops as soon as both of them have been found.
+ */
+public final class KdeGlobals {
+
+    private static final String GENERAL_GROUP = "General";
+    private static final String WINDOW_COLORS_GROUP = "Colors:Window";
+    private static final String COLOR_SCHEME_KEY = "ColorScheme";
+    private static final String BACKGROUND_KEY = "BackgroundNormal";
+
+    private static final int NO_COLOR = -1;
+    private static final double DARK_LUMA_THRESHOLD = 0.5;
+
+    private final String colorScheme;
+    private final int windowBackground;
+
+    KdeGlobals(@Nullable String colorScheme, int windowBackground) {
+        this.colorScheme = colorScheme;
+        this.windowBackground = windowBackground;
+    }
+
+    @NotNull
+    public static KdeGlobals read(@NotNull Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return parse(reader);
+        }
+    }
+
+    @NotNull
+    static KdeGlobals parse(@NotNull BufferedReader reader) throws IOException {
+        String colorScheme = null;
+        int windowBackground = NO_COLOR;
+        String group = null;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+            if (line.charAt(0) == '[') {
+                final int end = line.indexOf(']');
+                group = end > 0 ? line.substring(1, end) : null;
+                continue;
+            }
+            final int separator = line.indexOf('=');
+            if (separator <= 0 || group == null) {
+                continue;
+            }
+            final String key = stripOptions(line.substring(0, separator).trim());
+            final String value = line.substring(separator + 1).trim();
+            if (GENERAL_GROUP.equals(group) && COLOR_SCHEME_KEY.equals(key)) {
+                colorScheme = value;
+            } else if (WINDOW_COLORS_GROUP.equals(group) && BACKGROUND_KEY.equals(key)) {
+                windowBackground = parseColor(value);
+            }
+            if (colorScheme != null && windowBackground != NO_COLOR) {
+                break;
+            }
+        }
+        return new KdeGlobals(colorScheme, windowBackground);
+    }
+
+    /**
+     * Strips the options of a key, e.g. {@code ColorScheme[$i]}.
+     */
+    private static String stripOptions(String key) {
+        final int options = key.indexOf('[');
+        return options > 0 ? key.substring(0, options) : key;
+    }
+
+    /**
+     * Parses a color given as {@code r,g,b} (optionally followed by the alpha) or {@code #rrggbb}.
+     */
+    private static int parseColor(String value) {
+        try {
+            if (value.startsWith("#") && value.length() == 7) {
+                return Integer.parseInt(value.substring(1), 16);
+            }
+            final String[] components = value.split(",");
+            if (components.length < 3) {
+                return NO_COLOR;
+            }
+            int rgb = 0;
+            for (int i = 0; i < 3; i++) {
+                final int component = Integer.parseInt(components[i].trim());
+                if (component < 0 || component > 255) {
+                    return NO_COLOR;
+                }
+                rgb = rgb << 8 | component;
+            }
+            return rgb;
+        } catch (NumberFormatException e) {
+            return NO_COLOR;
+        }
+    }
+
+    /**
+     * @return the name of the color scheme (e.g. {@code BreezeDark}); {@code null} if it isn't set
+     */
+    @Nullable
+    public String getColorScheme() {
+        return colorScheme;
+    }
+
+    /**
+     * @return the background color of the windows as {@code 0xRRGGBB}; {@code -1} if it isn't set
+     */
+    public int getWindowBackground() {
+        return windowBackground;
+    }
+
+    /**
+     * Decides by the luma of the window background, or by the name of the color scheme
+     * if the background isn't set.
+     *
+     * @return {@code true} if the colors are dark
+     */
+    public boolean isDark() {
+        if (windowBackground != NO_COLOR) {
+            final int red = windowBackground >> 16 & 0xFF;
+            final int green = windowBackground >> 8 & 0xFF;
+            final int blue = windowBackground & 0xFF;
+            return (0.299 * red + 0.587 * green + 0.114 * blue) / 255 < DARK_LUMA_THRESHOLD;
+        }
+        return colorScheme != null && colorScheme.toLowerCase(Locale.ROOT).contains("dark");
+    }
+
+    @Override
+    public String toString() {
+        return "KdeGlobals{colorScheme=" + colorScheme + ", windowBackground=" +
+                (windowBackground == NO_COLOR ? "unset" : String.format("#%06x", windowBackground)) + '}';
+    }
+}
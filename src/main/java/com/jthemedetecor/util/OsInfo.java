@@ -9,54 +9,65 @@ import oshi.SystemInfo;
 import oshi.software.os.OperatingSystem;
 import io.github.g00fy2.versioncompare.Version;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
 
 public class OsInfo {
 
     private static final Logger logger = LoggerFactory.getLogger(OsThemeDetector.class);
 
-    private static final PlatformEnum platformType;
-    private static final String family;
-    private static final String version;
+    private static final String GNOME = "gnome";
+    private static final String KDE = "kde";
 
-    static {
-        final SystemInfo systemInfo = new SystemInfo();
-        final OperatingSystem osInfo = systemInfo.getOperatingSystem();
-        final OperatingSystem.OSVersionInfo osVersionInfo = osInfo.getVersionInfo();
-
-        platformType = SystemInfo.getCurrentPlatform();
-        family = osInfo.getFamily();
-        version = osVersionInfo.getVersion();
-    }
+    private static final String osName = System.getProperty("os.name", "").toLowerCase(Locale.ROOT);
 
     public static boolean isWindows10OrLater() {
-        return hasTypeAndVersionOrHigher(PlatformEnum.WINDOWS, "10");
+        return isWindows() && isVersionAtLeast("10");
     }
 
     public static boolean isLinux() {
-        return hasType(PlatformEnum.LINUX);
+        return osName.startsWith("linux");
     }
 
     public static boolean isMacOsMojaveOrLater() {
-        return hasTypeAndVersionOrHigher(PlatformEnum.MACOS, "10.14");
+        return isMacOs() && isVersionAtLeast("10.14");
+    }
+
+    private static boolean isWindows() {
+        return osName.startsWith("windows");
     }
 
+    private static boolean isMacOs() {
+        return osName.startsWith("mac") || osName.startsWith("darwin");
+    }
+
+    /**
+     * Checks the desktop environment variables, then the names of the running processes.
+     * The result is computed on the first call only.
+     */
     public static boolean isGnome() {
-        return isLinux() && (
-                        queryResultContains("echo $XDG_CURRENT_DESKTOP", "gnome") ||
-                        queryResultContains("echo $XDG_DATA_DIRS | grep -Eo 'gnome'", "gnome") ||
-                        queryResultContains("ps -e | grep -E -i \"gnome\"", "gnome")
-        );
+        return isLinux() && GnomeProbe.GNOME_DETECTED;
+    }
+
+    /**
+     * Checks the environment variables set by the KDE Plasma session.
+     */
+    public static boolean isKde() {
+        return isLinux() && (containsKde(System.getenv("XDG_CURRENT_DESKTOP")) ||
+                "true".equalsIgnoreCase(System.getenv("KDE_FULL_SESSION")));
     }
 
     public static boolean hasType(PlatformEnum platformType) {
-        return OsInfo.platformType.equals(platformType);
+        return PlatformTypeHolder.platformType.equals(platformType);
     }
 
     public static boolean isVersionAtLeast(String version) {
-        return new Version(OsInfo.version).isAtLeast(version);
+        return new Version(getVersion()).isAtLeast(version);
     }
 
     public static boolean hasTypeAndVersionOrHigher(PlatformEnum platformType, String version) {
@@ -64,34 +75,98 @@ public class OsInfo {
     }
 
     public static String getVersion() {
-        return version;
+        return OperatingSystemInfo.version;
     }
 
     public static String getFamily() {
-        return family;
+        return OperatingSystemInfo.family;
     }
 
-    private static boolean queryResultContains(@NotNull String cmd, @NotNull String subResult) {
-        return query(cmd).toLowerCase().contains(subResult);
+    /**
+     * Determines the platform from the {@code os.name} system property,
+     * falling back to OSHI for the less common platforms.
+     */
+    @NotNull
+    private static PlatformEnum currentPlatform() {
+        if (isWindows()) {
+            return PlatformEnum.WINDOWS;
+        } else if (isMacOs()) {
+            return PlatformEnum.MACOS;
+        } else if (isLinux()) {
+            return PlatformEnum.LINUX;
+        }
+        return SystemInfo.getCurrentPlatform();
     }
 
-    @NotNull
-    private static String query(@NotNull String cmd) {
-        try {
-            Process process = Runtime.getRuntime().exec(cmd);
-            StringBuilder stringBuilder = new StringBuilder();
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
-                String actualReadLine;
-                while ((actualReadLine = reader.readLine()) != null) {
-                    if (stringBuilder.length() != 0)
-                        stringBuilder.append('\n');
-                    stringBuilder.append(actualReadLine);
+    private static boolean probeGnome() {
+        return containsGnome(System.getenv("XDG_CURRENT_DESKTOP")) ||
+                containsGnome(System.getenv("XDG_DATA_DIRS")) ||
+                isGnomeProcessRunning();
+    }
+
+    private static boolean containsGnome(String value) {
+        return value != null && value.toLowerCase(Locale.ROOT).contains(GNOME);
+    }
+
+    private static boolean containsKde(String value) {
+        return value != null && value.toLowerCase(Locale.ROOT).contains(KDE);
+    }
+
+    /**
+     * Scans the command names of the running processes ({@code /proc/<pid>/comm}).
+     */
+    private static boolean isGnomeProcessRunning() {
+        try (DirectoryStream<Path> processes = Files.newDirectoryStream(Paths.get("/proc"), OsInfo::isProcessDirectory)) {
+            for (Path process : processes) {
+                try {
+                    if (containsGnome(new String(Files.readAllBytes(process.resolve("comm")), StandardCharsets.UTF_8))) {
+                        return true;
+                    }
+                } catch (IOException e) {
+                    // the process has exited in the meantime
                 }
             }
-            return stringBuilder.toString();
         } catch (IOException e) {
-            logger.error("Exception caught while querying the OS", e);
-            return "";
+            logger.error("Exception caught while listing the running processes", e);
+        }
+        return false;
+    }
+
+    private static boolean isProcessDirectory(Path path) {
+        final String name = path.getFileName().toString();
+        for (int i = 0; i < name.length(); i++) {
+            if (!Character.isDigit(name.charAt(i))) {
+                return false;
+            }
+        }
+        return !name.isEmpty();
+    }
+
+    /**
+     * Holds the OSHI platform type, so the OSHI classes are only loaded if it is asked for.
+     */
+    private static final class PlatformTypeHolder {
+        private static final PlatformEnum platformType = currentPlatform();
+    }
+
+    /**
+     * Holds the result of the Gnome detection, probed when it is first needed.
+     */
+    private static final class GnomeProbe {
+        private static final boolean GNOME_DETECTED = probeGnome();
+    }
+
+    /**
+     * Holds the os information queried through OSHI, initialized when it is first needed.
+     */
+    private static final class OperatingSystemInfo {
+        private static final String family;
+        private static final String version;
+
+        static {
+            final OperatingSystem osInfo = new SystemInfo().getOperatingSystem();
+            family = osInfo.getFamily();
+            version = osInfo.getVersionInfo().getVersion();
         }
     }
 
@@ -0,0 +1,122 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ *  you may not use this file except in compliance with the License.
+ *  You may obtain a copy of the License at
+ *
+ *          http://www.apache.org/licenses/LICENSE-2.0
+ *
+ *   Unless required by applicable law or agreed to in writing, software
+ *   distributed under the License is distributed on an "AS IS" BASIS,
+ *   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ *   See the License for the specific language governing permissions and
+ *   limitations under the License.
+ */
+
+package com.jthemedetecor.util;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+
+/**
+ * Access to the Unix-domain socket channels of the JDK (available since Java 16).
+ * The library is compiled for Java 11, so they are reached through reflection.
+ */
+public final class UnixSockets {
+
+    private static final ProtocolFamily UNIX_FAMILY;
+    private static final Method ADDRESS_FACTORY;
+    private static final Method OPEN_CHANNEL;
+    private static final Method OPEN_SERVER_CHANNEL;
+
+    static {
+        ProtocolFamily family = null;
+        Method addressFactory = null;
+        Method openChannel = null;
+        Method openServerChannel = null;
+        try {
+            family = StandardProtocolFamily.valueOf("UNIX");
+            addressFactory = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", Path.class);
+            openChannel = SocketChannel.class.getMethod("open", ProtocolFamily.class);
+            openServerChannel = ServerSocketChannel.class.getMethod("open", ProtocolFamily.class);
+        } catch (IllegalArgumentException | ReflectiveOperationException e) {
+            family = null;
+        }
+        UNIX_FAMILY = family;
+        ADDRESS_FACTORY = addressFactory;
+        OPEN_CHANNEL = openChannel;
+        OPEN_SERVER_CHANNEL = openServerChannel;
+    }
+
+    /**
+     * @return {@code true} if the running JDK supports Unix-domain socket channels
+     */
+    public static boolean isSupported() {
+        return UNIX_FAMILY != null;
+    }
+
+    /**
+     * Opens a blocking channel connected to the socket file.
+     */
+    @NotNull
+    public static SocketChannel connect(@NotNull Path socketFile) throws IOException {
+        final SocketChannel channel = (SocketChannel) invoke(OPEN_CHANNEL, UNIX_FAMILY);
+        try {
+            channel.connect(address(socketFile));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    /**
+     * Opens a server channel bound to the socket file.
+     */
+    @NotNull
+    public static ServerSocketChannel bind(@NotNull Path socketFile) throws IOException {
+        final ServerSocketChannel channel = (ServerSocketChannel) invoke(OPEN_SERVER_CHANNEL, UNIX_FAMILY);
+        try {
+            channel.bind(address(socketFile));
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        return channel;
+    }
+
+    @NotNull
+    private static SocketAddress address(@NotNull Path socketFile) throws IOException {
+        return (SocketAddress) invoke(ADDRESS_FACTORY, socketFile);
+    }
+
+    @Nullable
+    private static Object invoke(Method staticFactory, Object argument) throws IOException {
+        if (!isSupported()) {
+            throw new IOException("Unix-domain sockets are not supported by this JDK");
+        }
+        try {
+            return staticFactory.invoke(null, argument);
+        } catch (IllegalAccessException e) {
+            throw new IOException(e);
+        } catch (InvocationTargetException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private UnixSockets() {
+    }
+}
@@ -6,8 +6,15 @@ module com.jthemedetector {
     requires com.sun.jna;
     requires com.github.oshi;
     requires versioncompare;
+    requires java.management;
+    requires jdk.jfr;
 
     exports com.jthemedetecor;
+
+    // only the third-party providers are discovered: the built-in ones are hard-wired rather than declared
+    // with provides, as they are the constants of one package-private enum, which ServiceLoader can't instantiate,
+    // they have to be found on the class path too, and the startup cache identifies them by their constants
+    uses com.jthemedetecor.ThemeDetectorProvider;
     
     opens com.jthemedetecor to com.sun.jna;
 }
\ No newline at end of file
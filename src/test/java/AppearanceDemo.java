@@ -0,0 +1,24 @@
+import com.jthemedetecor.AppearanceAttribute;
+import com.jthemedetecor.OsThemeDetector;
+
+import java.util.Scanner;
+
+/**
+ * Prints the appearance settings and listens to the changes of the individual attributes.
+ */
+public class AppearanceDemo {
+    public static void main(String[] args) {
+        final OsThemeDetector detector = OsThemeDetector.getDetector();
+        System.out.println(detector.getAppearance());
+
+        detector.registerListener(isDark -> System.out.println("OS is dark: " + isDark));
+        detector.registerListener(AppearanceAttribute.ACCENT_COLOR, color -> System.out.println("Accent color: " + color));
+        detector.registerListener(AppearanceAttribute.HIGH_CONTRAST, highContrast -> System.out.println("High contrast: " + highContrast));
+        detector.registerListener(AppearanceAttribute.TEXT_SCALING_FACTOR, factor -> System.out.println("Text scaling factor: " + factor));
+        detector.registerListener(AppearanceAttribute.CURSOR_THEME, theme -> System.out.println("Cursor theme: " + theme));
+
+        System.out.println("Listening to appearance changes... (Press E for exit)");
+        Scanner scanner = new Scanner(System.in);
+        while (!scanner.nextLine().toLowerCase().startsWith("e")) ;
+    }
+}
@@ -0,0 +1,135 @@
+import com.jthemedetecor.util.GvdbReader;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Reads the theme keys from a dconf database with {@link GvdbReader}.
+ * Without arguments a small database is generated first; otherwise the given file is read
+ * (e.g. {@code ~/.config/dconf/user}).
+ */
+public class DconfDatabaseDemo {
+
+    private static final String INTERFACE_DIR = "/org/gnome/desktop/interface/";
+    private static final byte[] GTK_THEME = (INTERFACE_DIR + "gtk-theme").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] COLOR_SCHEME = (INTERFACE_DIR + "color-scheme").getBytes(StandardCharsets.UTF_8);
+
+    public static void main(String[] args) throws IOException {
+        final Path file;
+        if (args.length > 0) {
+            file = Paths.get(args[0]);
+        } else {
+            file = Files.createTempFile("dconf", ".gvdb");
+            file.toFile().deleteOnExit();
+            Files.write(file, writeDatabase("Adwaita", "prefer-dark"));
+        }
+
+        final GvdbReader reader = GvdbReader.open(file);
+        System.out.println("gtk-theme: " + reader.getString(GTK_THEME));
+        System.out.println("color-scheme: " + reader.getString(COLOR_SCHEME));
+        System.out.println("missing key: " + reader.getString((INTERFACE_DIR + "cursor-theme").getBytes(StandardCharsets.UTF_8)));
+
+        final int lookups = 5_000_000;
+        int found = 0;
+        final long start = System.nanoTime();
+        for (int i = 0; i < lookups; i++) {
+            if (reader.getString((i & 1) == 0 ? GTK_THEME : COLOR_SCHEME) != null) {
+                found++;
+            }
+        }
+        System.out.printf("%.1f ns/lookup (%d found)%n", (System.nanoTime() - start) / (double) lookups, found);
+    }
+
+    /**
+     * Writes a GVDB file holding the interface directory and its two theme keys; the keys are stored
+     * relative to the directory item, like dconf does.
+     */
+    private static byte[] writeDatabase(String gtkTheme, String colorScheme) {
+        final List<Item> items = new ArrayList<>();
+        final Item directory = new Item(INTERFACE_DIR, INTERFACE_DIR, null, 'L', null);
+        items.add(directory);
+        items.add(new Item(INTERFACE_DIR + "gtk-theme", "gtk-theme", directory, 'v', gtkTheme));
+        items.add(new Item(INTERFACE_DIR + "color-scheme", "color-scheme", directory, 'v', colorScheme));
+
+        final int buckets = items.size();
+        items.sort(Comparator.comparingInt(item -> Integer.remainderUnsigned(item.hash, buckets)));
+
+        final int tableStart = 24;
+        final int itemsStart = tableStart + 8 + buckets * 4;
+        final int tableEnd = itemsStart + items.size() * 24;
+        final ByteBuffer buffer = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put("GVariant".getBytes(StandardCharsets.US_ASCII)).putInt(0).putInt(0).putInt(tableStart).putInt(tableEnd);
+        buffer.putInt(0).putInt(buckets);
+        for (int bucket = 0; bucket < buckets; bucket++) {
+            int first = 0;
+            while (first < items.size() && Integer.remainderUnsigned(items.get(first).hash, buckets) < bucket) {
+                first++;
+            }
+            buffer.putInt(first);
+        }
+
+        int dataPosition = tableEnd;
+        for (Item item : items) {
+            final byte[] key = item.keySegment.getBytes(StandardCharsets.UTF_8);
+            putAt(buffer, dataPosition, key);
+            final int keyStart = dataPosition;
+            dataPosition += key.length;
+            int valueStart = 0;
+            int valueEnd = 0;
+            if (item.value != null) {
+                // a variant holding a string: the nul-terminated string, a zero byte and the type
+                final byte[] value = (item.value + "\0\0s").getBytes(StandardCharsets.UTF_8);
+                valueStart = dataPosition;
+                putAt(buffer, dataPosition, value);
+                dataPosition += value.length;
+                valueEnd = dataPosition;
+            }
+            buffer.putInt(item.hash)
+                    .putInt(item.parent == null ? -1 : items.indexOf(item.parent))
+                    .putInt(keyStart)
+                    .putShort((short) key.length)
+                    .put((byte) item.type)
+                    .put((byte) 0)
+                    .putInt(valueStart)
+                    .putInt(valueEnd);
+        }
+        final byte[] bytes = new byte[dataPosition];
+        buffer.position(0);
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    private static void putAt(ByteBuffer buffer, int position, byte[] bytes) {
+        for (int i = 0; i < bytes.length; i++) {
+            buffer.put(position + i, bytes[i]);
+        }
+    }
+
+    private static final class Item {
+        final int hash;
+        final String keySegment;
+        final Item parent;
+        final char type;
+        final String value;
+
+        Item(String fullKey, String keySegment, Item parent, char type, String value) {
+            int hash = 5381;
+            for (byte b : fullKey.getBytes(StandardCharsets.UTF_8)) {
+                hash = hash * 33 + b;
+            }
+            this.hash = hash;
+            this.keySegment = keySegment;
+            this.parent = parent;
+            this.type = type;
+            this.value = value;
+        }
+    }
+}
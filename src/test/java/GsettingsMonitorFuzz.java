@@ -0,0 +1,157 @@
+import com.jthemedetecor.util.GsettingsMonitorReader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+/**
+ * Fuzzes the {@link GsettingsMonitorReader} with random {@code gsettings monitor} transcripts: well-formed
+ * records mixed with malformed, overlong and non-ASCII lines, delivered in random chunks. The records read
+ * have to be exactly the lines a regular expression accepts, in order, and the reader mustn't throw.
+ * The seed and the number of transcripts can be given as arguments.
+ */
+public class GsettingsMonitorFuzz {
+
+    private static final Pattern RECORD = Pattern.compile(
+            "[a-z][a-z0-9-]*+: ([^ '\"].*|'([^'\\\\]++|\\\\.)*+'|\"([^\"\\\\]++|\\\\.)*+\")", Pattern.DOTALL);
+
+    private static final String[] KEYS = {"gtk-theme", "color-scheme", "cursor-size", "text-scaling-factor", "a", "x-1"};
+    private static final String[] VALUES = {"'Adwaita'", "'Adwaita-dark'", "'prefer-dark'", "24", "1.0", "true",
+            "\"it's\"", "'it\\'s'", "@as []", "'Mojave-\u00c1rv\u00edzt\u0171r\u0151T\u00fck\u00f6rf\u00far\u00f3g\u00e9p'", "'\ud83d\ude00'"};
+    private static final String ALPHABET = "az09-:' \"\\\rZ\t\u00e1\ud83d\ude00";
+
+    public static void main(String[] args) throws IOException {
+        final long seed = args.length > 0 ? Long.parseLong(args[0]) : System.nanoTime();
+        final int transcripts = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        final Random random = new Random(seed);
+        long records = 0;
+        for (int t = 0; t < transcripts; t++) {
+            final List<String> lines = new ArrayList<>();
+            final int count = random.nextInt(200);
+            for (int i = 0; i < count; i++) {
+                lines.add(randomLine(random));
+            }
+            final boolean lastLineTerminated = random.nextBoolean();
+            final String failure = check(lines, lastLineTerminated, random);
+            if (failure != null) {
+                System.out.println("FAILED (seed " + seed + ", transcript " + t + "): " + failure);
+                System.exit(1);
+            }
+            records += count;
+        }
+        System.out.println("OK: " + transcripts + " transcripts, " + records + " lines (seed " + seed + ")");
+    }
+
+    private static String check(List<String> lines, boolean lastLineTerminated, Random random) throws IOException {
+        final ByteArrayOutputStream transcript = new ByteArrayOutputStream();
+        final List<String> expected = new ArrayList<>();
+        for (int i = 0; i < lines.size(); i++) {
+            final String line = lines.get(i);
+            final byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            transcript.write(bytes);
+            final boolean terminated = i < lines.size() - 1 || lastLineTerminated;
+            if (terminated) {
+                transcript.write('\n');
+            }
+            final String content = line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+            if (terminated && bytes.length < GsettingsMonitorReader.MAX_RECORD_LENGTH && RECORD.matcher(content).matches()) {
+                expected.add(content);
+            }
+        }
+
+        final GsettingsMonitorReader reader =
+                new GsettingsMonitorReader(new ChunkedInputStream(transcript.toByteArray(), random));
+        int read = 0;
+        try {
+            while (reader.next()) {
+                final String key = reader.key();
+                final String value = reader.value();
+                if (read >= expected.size()) {
+                    return "unexpected record " + key + ": " + value;
+                }
+                if (!(key + ": " + value).equals(expected.get(read))) {
+                    return "expected " + expected.get(read) + " but read " + key + ": " + value;
+                }
+                if (!reader.keyEquals(key) || !reader.valueEquals(value) || reader.valueEquals(value + "x")) {
+                    return "the comparisons disagree with " + key + ": " + value;
+                }
+                read++;
+            }
+        } catch (RuntimeException e) {
+            return "thrown " + e;
+        }
+        if (read != expected.size()) {
+            return "read " + read + " of " + expected.size() + " records";
+        }
+        // an empty last line without a line break isn't a line
+        final int lineCount = lastLineTerminated || lines.isEmpty() || !lines.get(lines.size() - 1).isEmpty() ?
+                lines.size() : lines.size() - 1;
+        if (reader.getSkippedRecords() != lineCount - expected.size()) {
+            return "counted " + reader.getSkippedRecords() + " skipped lines instead of " + (lineCount - expected.size());
+        }
+        return null;
+    }
+
+    private static String randomLine(Random random) {
+        switch (random.nextInt(10)) {
+            case 0:
+                return randomString(random, random.nextInt(40));
+            case 1:
+                // around the maximum length of a record
+                return "gtk-theme: '" + "x".repeat(GsettingsMonitorReader.MAX_RECORD_LENGTH - 14 + random.nextInt(4)) + "'";
+            case 2:
+                return KEYS[random.nextInt(KEYS.length)] + ": " + randomString(random, random.nextInt(20));
+            case 3:
+                return KEYS[random.nextInt(KEYS.length)] + ": " + VALUES[random.nextInt(VALUES.length)] + "\r";
+            case 4:
+                final String valid = KEYS[random.nextInt(KEYS.length)] + ": " + VALUES[random.nextInt(VALUES.length)];
+                return valid.substring(0, random.nextInt(valid.length()));
+            default:
+                return KEYS[random.nextInt(KEYS.length)] + ": " + VALUES[random.nextInt(VALUES.length)];
+        }
+    }
+
+    private static String randomString(Random random, int length) {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            builder.appendCodePoint(ALPHABET.codePointAt(ALPHABET.offsetByCodePoints(0, random.nextInt(ALPHABET.codePointCount(0, ALPHABET.length())))));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Returns the bytes in chunks of random sizes, like a pipe does.
+     */
+    private static final class ChunkedInputStream extends InputStream {
+
+        private final byte[] bytes;
+        private final Random random;
+        private int position;
+
+        ChunkedInputStream(byte[] bytes, Random random) {
+            this.bytes = bytes;
+            this.random = random;
+        }
+
+        @Override
+        public int read() {
+            return position < bytes.length ? bytes[position++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) {
+            if (position == bytes.length) {
+                return -1;
+            }
+            final int chunk = Math.min(Math.min(length, bytes.length - position), 1 + random.nextInt(random.nextBoolean() ? 8 : 9000));
+            System.arraycopy(bytes, position, buffer, offset, chunk);
+            position += chunk;
+            return chunk;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+import com.jthemedetecor.OsThemeDetector;
+
+import java.util.function.Consumer;
+
+/**
+ * Measures the per-call latency of {@link OsThemeDetector#isDark()} when the os has to be queried
+ * (no listener registered) and when the state is maintained by the running monitor.
+ */
+public class IsDarkBenchmark {
+
+    private static final int WARMUP_CALLS = 20;
+    private static final int QUERY_CALLS = 200;
+    private static final int CACHED_CALLS = 10_000_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        final OsThemeDetector detector = OsThemeDetector.getDetector();
+
+        measure("Querying the os (no monitor)", detector, WARMUP_CALLS, QUERY_CALLS);
+
+        final Consumer<Boolean> listener = isDark -> System.out.println("OS is dark: " + isDark);
+        detector.registerListener(listener);
+        Thread.sleep(500);
+        measure("Reading the cached state (monitor running)", detector, CACHED_CALLS / 10, CACHED_CALLS);
+        System.out.println("State version: " + detector.stateVersion());
+        detector.removeListener(listener);
+    }
+
+    private static void measure(String title, OsThemeDetector detector, int warmupCalls, int calls) {
+        boolean dark = false;
+        for (int i = 0; i < warmupCalls; i++) {
+            dark ^= detector.isDark();
+        }
+        final long start = System.nanoTime();
+        for (int i = 0; i < calls; i++) {
+            dark ^= detector.isDark();
+        }
+        final long elapsed = System.nanoTime() - start;
+        System.out.printf("%s: %d calls, %.1f ns/call (%b)%n", title, calls, (double) elapsed / calls, dark);
+    }
+}
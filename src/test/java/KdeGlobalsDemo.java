@@ -0,0 +1,42 @@
+import com.jthemedetecor.util.KdeGlobals;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Reads the color settings of KDE Plasma with {@link KdeGlobals}.
+ * Without arguments a Breeze Dark sample is generated first; otherwise the given file is read
+ * (e.g. {@code ~/.config/kdeglobals}).
+ */
+public class KdeGlobalsDemo {
+
+    private static final String SAMPLE = String.join("\n",
+            "[ColorEffects:Disabled]",
+            "Color=56,56,56",
+            "",
+            "[Colors:Window]",
+            "BackgroundAlternate=49,54,59",
+            "BackgroundNormal=32,35,38",
+            "",
+            "[General]",
+            "ColorScheme=BreezeDark",
+            "");
+
+    public static void main(String[] args) throws IOException {
+        final Path file;
+        if (args.length > 0) {
+            file = Paths.get(args[0]);
+        } else {
+            file = Files.createTempFile("kdeglobals", null);
+            file.toFile().deleteOnExit();
+            Files.write(file, SAMPLE.getBytes(StandardCharsets.UTF_8));
+        }
+
+        final KdeGlobals globals = KdeGlobals.read(file);
+        System.out.println(globals);
+        System.out.println("dark: " + globals.isDark());
+    }
+}
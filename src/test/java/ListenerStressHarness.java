@@ -0,0 +1,264 @@
+import com.jthemedetecor.DispatchStatistics;
+import com.jthemedetecor.OsThemeDetector;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Registers, removes and notifies listeners from many threads against a fake backend, then checks that
+ * at most one monitor ran at a time and that every listener left registered is still notified.
+ * <p>
+ * Arguments: the number of threads (default 8), the duration in seconds (default 10) and the number of listeners
+ * per thread (default 1; with few listeners the registry often becomes empty, so the monitor is restarted a lot).
+ */
+public class ListenerStressHarness {
+
+    public static void main(String[] args) throws InterruptedException {
+        final int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        final int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        final int listenersPerThread = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+
+        final FakeBackendDetector detector = new FakeBackendDetector();
+        detector.setCoalescingWindow(0, TimeUnit.MILLISECONDS);
+
+        final List<Worker> workers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            workers.add(new Worker(detector, "Stress Worker " + i, listenersPerThread));
+        }
+        final long start = System.nanoTime();
+        final long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        workers.forEach(worker -> worker.start(end));
+        for (Worker worker : workers) {
+            worker.thread.join();
+        }
+        final double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        long registrations = 0, removals = 0, emissions = 0, notifications = 0;
+        final List<RecordingListener> registered = new ArrayList<>();
+        for (Worker worker : workers) {
+            registrations += worker.registrations;
+            removals += worker.removals;
+            emissions += worker.emissions;
+            for (RecordingListener listener : worker.listeners) {
+                notifications += listener.notifications.sum();
+                if (listener.registered) {
+                    registered.add(listener);
+                }
+            }
+        }
+        System.out.printf("%d threads, %.1f s: %d registrations, %d removals, %d emissions%n",
+                threads, elapsedSeconds, registrations, removals, emissions);
+        System.out.printf("Throughput: %.0f ops/s, %d notifications%n",
+                (registrations + removals + emissions) / elapsedSeconds, notifications);
+        System.out.println("Monitor starts: " + detector.monitorStarts.get()
+                + ", most monitors at a time: " + detector.maxActiveMonitors.get());
+        final DispatchStatistics statistics = detector.getDispatchStatistics();
+        System.out.println(statistics);
+
+        final List<String> failures = new ArrayList<>();
+        if (detector.maxActiveMonitors.get() > 1) {
+            failures.add(detector.maxActiveMonitors.get() + " monitors ran at the same time");
+        }
+        final int expectedMonitors = registered.isEmpty() ? 0 : 1;
+        if (detector.activeMonitors.get() != expectedMonitors) {
+            failures.add(detector.activeMonitors.get() + " monitors run for " + registered.size() + " listeners");
+        }
+        final int listenerCount = detector.getMetrics().getListenerStatistics().size();
+        if (listenerCount != registered.size()) {
+            failures.add(listenerCount + " listeners are registered instead of " + registered.size());
+        }
+        if (!detector.awaitStoppedMonitors(TimeUnit.SECONDS.toNanos(5))) {
+            failures.add("An interrupted monitor thread hasn't exited");
+        }
+
+        // whatever the current state is, the listeners end up notified about a light theme
+        registered.forEach(RecordingListener::reset);
+        detector.emit(true);
+        detector.emit(false);
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        for (RecordingListener listener : registered) {
+            if (!listener.awaitLight(deadline)) {
+                failures.add("Listener " + listener.id + " wasn't notified");
+            }
+        }
+
+        detector.close();
+        if (!detector.awaitStoppedMonitors(TimeUnit.SECONDS.toNanos(5)) || detector.activeMonitors.get() != 0) {
+            failures.add("The monitor survived the close");
+        }
+
+        if (failures.isEmpty()) {
+            System.out.println("OK: " + registered.size() + " listeners left registered, all notified");
+        } else {
+            failures.forEach(failure -> System.out.println("FAILED: " + failure));
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Registers and removes its own listeners at random, and emits theme changes in between.
+     */
+    private static final class Worker {
+
+        private final FakeBackendDetector detector;
+        private final Thread thread;
+        private final List<RecordingListener> listeners = new ArrayList<>();
+        private long registrations, removals, emissions;
+        private long end;
+
+        Worker(FakeBackendDetector detector, String name, int listenerCount) {
+            this.detector = detector;
+            this.thread = new Thread(this::run, name);
+            for (int i = 0; i < listenerCount; i++) {
+                listeners.add(new RecordingListener(name + "/" + i));
+            }
+        }
+
+        void start(long end) {
+            this.end = end;
+            thread.start();
+        }
+
+        private void run() {
+            final ThreadLocalRandom random = ThreadLocalRandom.current();
+            while (System.nanoTime() < end) {
+                for (int i = 0; i < 1000; i++) {
+                    final int operation = random.nextInt(10);
+                    if (operation == 0) {
+                        detector.emit(random.nextBoolean());
+                        emissions++;
+                        continue;
+                    }
+                    final RecordingListener listener = listeners.get(random.nextInt(listeners.size()));
+                    if (listener.registered) {
+                        detector.removeListener(listener);
+                        listener.registered = false;
+                        removals++;
+                    } else {
+                        detector.registerListener(listener);
+                        listener.registered = true;
+                        registrations++;
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class RecordingListener implements Consumer<Boolean> {
+
+        private final String id;
+        private final LongAdder notifications = new LongAdder();
+        // only touched by the worker owning the listener
+        private boolean registered;
+        private volatile Boolean lastValue;
+
+        RecordingListener(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public void accept(Boolean dark) {
+            notifications.increment();
+            lastValue = dark;
+        }
+
+        void reset() {
+            lastValue = null;
+        }
+
+        boolean awaitLight(long deadline) throws InterruptedException {
+            while (!Boolean.FALSE.equals(lastValue)) {
+                if (System.nanoTime() > deadline) {
+                    return false;
+                }
+                Thread.sleep(1);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * A detector whose "os" is a queue of theme changes, consumed by a monitor thread that is started
+     * and interrupted like the ones of the real detectors.
+     */
+    private static final class FakeBackendDetector extends OsThemeDetector {
+
+        // the changes beyond the capacity are dropped, like the ones of a busy os
+        private final BlockingQueue<Boolean> changes = new LinkedBlockingQueue<>(1024);
+        private final AtomicInteger activeMonitors = new AtomicInteger();
+        private final AtomicInteger maxActiveMonitors = new AtomicInteger();
+        private final AtomicInteger monitorStarts = new AtomicInteger();
+        private final List<Thread> stoppedMonitors = new ArrayList<>();
+        private Thread monitor;
+
+        void emit(boolean dark) {
+            changes.offer(dark);
+        }
+
+        @Override
+        protected boolean queryDark() {
+            return false;
+        }
+
+        @Override
+        protected boolean isMonitoring() {
+            return activeMonitors.get() > 0;
+        }
+
+        // the base class calls these under its lock, but a broken caller would show up in the counters
+        @Override
+        protected void startMonitoring() {
+            if (monitor != null) {
+                return;
+            }
+            maxActiveMonitors.accumulateAndGet(activeMonitors.incrementAndGet(), Math::max);
+            monitorStarts.incrementAndGet();
+            monitor = new Thread(this::monitor, "Fake Monitor");
+            monitor.setDaemon(true);
+            monitor.start();
+        }
+
+        @Override
+        protected void stopMonitoring() {
+            if (monitor == null) {
+                return;
+            }
+            monitor.interrupt();
+            synchronized (stoppedMonitors) {
+                stoppedMonitors.add(monitor);
+            }
+            monitor = null;
+            activeMonitors.decrementAndGet();
+        }
+
+        private void monitor() {
+            try {
+                while (!Thread.currentThread().isInterrupted()) {
+                    onThemeDetected(changes.take());
+                }
+            } catch (InterruptedException ignored) {
+            }
+        }
+
+        boolean awaitStoppedMonitors(long timeoutNanos) throws InterruptedException {
+            final long deadline = System.nanoTime() + timeoutNanos;
+            synchronized (stoppedMonitors) {
+                for (Thread thread : stoppedMonitors) {
+                    TimeUnit.NANOSECONDS.timedJoin(thread, Math.max(1, deadline - System.nanoTime()));
+                    if (thread.isAlive()) {
+                        return false;
+                    }
+                }
+                stoppedMonitors.clear();
+            }
+            return true;
+        }
+    }
+}
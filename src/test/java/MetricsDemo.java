@@ -0,0 +1,31 @@
+import com.jthemedetecor.DetectorMetrics;
+import com.jthemedetecor.OsThemeDetector;
+
+import java.util.function.Consumer;
+
+/**
+ * Prints the metrics of the detector every few seconds while a listener is registered.
+ * They can also be watched in JConsole/VisualVM under {@value OsThemeDetector#MBEAN_NAME}.
+ */
+public class MetricsDemo {
+
+    public static void main(String[] args) throws InterruptedException {
+        final OsThemeDetector detector = OsThemeDetector.getDetector();
+        OsThemeDetector.registerMBean();
+
+        for (int i = 0; i < 10; i++) {
+            detector.isDark();
+        }
+        final Consumer<Boolean> listener = isDark -> System.out.println("OS is dark: " + isDark);
+        detector.registerListener(listener);
+
+        while (true) {
+            Thread.sleep(5000);
+            final DetectorMetrics metrics = detector.getMetrics();
+            System.out.println("Spawned processes: " + metrics.getSpawnedProcesses());
+            System.out.println("isDark() queries: " + metrics.getQueryLatency());
+            System.out.println(metrics.getDispatchStatistics());
+            metrics.getListenerStatistics().forEach(System.out::println);
+        }
+    }
+}
@@ -0,0 +1,203 @@
+import com.jthemedetecor.dbus.DBusConnection;
+import com.jthemedetecor.dbus.DBusMessage;
+import com.jthemedetecor.util.UnixSockets;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs the D-Bus client used by the portal detector against a small stand-in bus that speaks the wire protocol
+ * and implements the {@code org.freedesktop.portal.Settings} color-scheme setting.
+ * Requires Java 16 or later.
+ */
+public class PortalBusDemo {
+
+    private static final String PORTAL_PATH = "/org/freedesktop/portal/desktop";
+    private static final String SETTINGS_INTERFACE = "org.freedesktop.portal.Settings";
+
+    public static void main(String[] args) throws Exception {
+        final Path socketFile = Files.createTempDirectory("fake-bus").resolve("bus");
+        try (FakePortalBus bus = new FakePortalBus(socketFile)) {
+            bus.start();
+            final String address = "unix:path=" + socketFile;
+
+            try (DBusConnection connection = DBusConnection.open(address, 1000)) {
+                System.out.println("Connected as " + connection.getUniqueName());
+                connection.addMatch("type='signal',interface='" + SETTINGS_INTERFACE + "',member='SettingChanged'", 1000);
+
+                final int calls = 10_000;
+                final long start = System.nanoTime();
+                Object value = null;
+                for (int i = 0; i < calls; i++) {
+                    value = readColorScheme(connection);
+                }
+                System.out.printf("color-scheme: %s, %.1f us/read%n", value, (System.nanoTime() - start) / 1000.0 / calls);
+
+                for (int colorScheme : new int[]{1, 2, 1}) {
+                    final long sent = System.nanoTime();
+                    bus.setColorScheme(colorScheme);
+                    final DBusMessage signal = connection.receive(1000);
+                    System.out.printf("%s %s after %.1f us%n",
+                            signal.getMember(), signal.getBody(), (System.nanoTime() - sent) / 1000.0);
+                }
+            }
+        }
+    }
+
+    private static Object readColorScheme(DBusConnection connection) throws IOException {
+        final DBusMessage reply = connection.call(DBusMessage.methodCall("org.freedesktop.portal.Desktop",
+                PORTAL_PATH, SETTINGS_INTERFACE, "Read", "ss", "org.freedesktop.appearance", "color-scheme"), 1000);
+        return ((DBusMessage.Variant) reply.getBody().get(0)).unwrap();
+    }
+
+    /**
+     * A single-purpose message bus serving the portal color-scheme setting.
+     */
+    static final class FakePortalBus implements AutoCloseable {
+
+        private final ServerSocketChannel server;
+        private final Set<Client> subscribers = ConcurrentHashMap.newKeySet();
+        private final AtomicInteger clientCounter = new AtomicInteger();
+        private volatile long colorScheme;
+
+        FakePortalBus(Path socketFile) throws IOException {
+            this.server = UnixSockets.bind(socketFile);
+        }
+
+        void start() {
+            final Thread acceptor = new Thread(() -> {
+                try {
+                    while (true) {
+                        final Client client = new Client(server.accept(), ":1." + clientCounter.incrementAndGet());
+                        final Thread thread = new Thread(client::serve, "Fake bus client " + client.name);
+                        thread.setDaemon(true);
+                        thread.start();
+                    }
+                } catch (IOException e) {
+                    // the bus has been closed
+                }
+            }, "Fake bus acceptor");
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        void setColorScheme(long colorScheme) throws IOException {
+            this.colorScheme = colorScheme;
+            for (Client subscriber : subscribers) {
+                final DBusMessage signal = DBusMessage.signal(PORTAL_PATH, SETTINGS_INTERFACE, "SettingChanged", "ssv",
+                        "org.freedesktop.appearance", "color-scheme", new DBusMessage.Variant("u", colorScheme));
+                signal.setSender("org.freedesktop.portal.Desktop");
+                subscriber.send(signal);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            server.close();
+        }
+
+        private final class Client {
+            private final SocketChannel channel;
+            private final String name;
+            private final AtomicLong serial = new AtomicLong();
+
+            Client(SocketChannel channel, String name) {
+                this.channel = channel;
+                this.name = name;
+            }
+
+            void serve() {
+                try (SocketChannel ignored = channel) {
+                    authenticate();
+                    while (true) {
+                        final DBusMessage message = readMessage();
+                        message.setSender(name);
+                        if (message.getType() == DBusMessage.METHOD_CALL) {
+                            send(handle(message));
+                        }
+                    }
+                } catch (IOException e) {
+                    subscribers.remove(this);
+                }
+            }
+
+            private DBusMessage handle(DBusMessage call) throws IOException {
+                final List<Object> body = call.getBody();
+                switch (call.getMember()) {
+                    case "Hello":
+                        return DBusMessage.methodReturn(call, "s", name);
+                    case "AddMatch":
+                        subscribers.add(this);
+                        return DBusMessage.methodReturn(call, "");
+                    case "Read":
+                        if ("org.freedesktop.appearance".equals(body.get(0)) && "color-scheme".equals(body.get(1))) {
+                            return DBusMessage.methodReturn(call, "v",
+                                    new DBusMessage.Variant("v", new DBusMessage.Variant("u", colorScheme)));
+                        }
+                        return DBusMessage.error(call, "org.freedesktop.portal.Error.NotFound", "Requested setting not found");
+                    default:
+                        return DBusMessage.error(call, "org.freedesktop.DBus.Error.UnknownMethod", call.getMember());
+                }
+            }
+
+            private void authenticate() throws IOException {
+                readFully(ByteBuffer.allocate(1));
+                String line;
+                while (!(line = readLine()).equals("BEGIN")) {
+                    final String reply = line.startsWith("AUTH EXTERNAL") ? "OK 0123456789abcdef0123456789abcdef" : "REJECTED EXTERNAL";
+                    write(ByteBuffer.wrap((reply + "\r\n").getBytes(StandardCharsets.US_ASCII)));
+                }
+            }
+
+            private String readLine() throws IOException {
+                final StringBuilder line = new StringBuilder();
+                final ByteBuffer single = ByteBuffer.allocate(1);
+                while (line.length() < 2 || !line.substring(line.length() - 2).equals("\r\n")) {
+                    single.clear();
+                    readFully(single);
+                    line.append((char) single.get(0));
+                }
+                return line.substring(0, line.length() - 2);
+            }
+
+            private DBusMessage readMessage() throws IOException {
+                final ByteBuffer fixedHeader = ByteBuffer.allocate(DBusMessage.fixedHeaderLength());
+                readFully(fixedHeader);
+                final ByteBuffer message = ByteBuffer.allocate(DBusMessage.messageLength(fixedHeader));
+                fixedHeader.flip();
+                message.put(fixedHeader);
+                readFully(message);
+                message.flip();
+                return DBusMessage.decode(message);
+            }
+
+            private void readFully(ByteBuffer buffer) throws IOException {
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) {
+                        throw new IOException("Client disconnected");
+                    }
+                }
+            }
+
+            synchronized void send(DBusMessage message) throws IOException {
+                write(message.encode(serial.incrementAndGet()));
+            }
+
+            private synchronized void write(ByteBuffer buffer) throws IOException {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+}
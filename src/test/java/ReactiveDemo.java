@@ -0,0 +1,41 @@
+import com.jthemedetecor.OsThemeDetector;
+import com.jthemedetecor.ThemeState;
+
+import java.util.Scanner;
+import java.util.concurrent.Flow;
+
+public class ReactiveDemo {
+    public static void main(String[] args) {
+        final OsThemeDetector detector = OsThemeDetector.getDetector();
+        detector.isDarkAsync().thenAccept(isDark -> System.out.println("OS is dark (async): " + isDark));
+
+        detector.themeStates().subscribe(new Flow.Subscriber<ThemeState>() {
+            private Flow.Subscription subscription;
+
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                this.subscription = subscription;
+                subscription.request(1);
+            }
+
+            @Override
+            public void onNext(ThemeState state) {
+                System.out.println("Theme state: " + state);
+                subscription.request(1);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                throwable.printStackTrace();
+            }
+
+            @Override
+            public void onComplete() {
+            }
+        });
+
+        System.out.println("Listening to system ui theme change... (Press E for exit)");
+        Scanner scanner = new Scanner(System.in);
+        while(!scanner.nextLine().toLowerCase().startsWith("e"));
+    }
+}
@@ -0,0 +1,46 @@
+import com.jthemedetecor.MonitorHealth;
+import com.jthemedetecor.OsThemeDetector;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Deletes the directory of the shared monitoring (as a cleanup of {@code $XDG_RUNTIME_DIR} would) while the
+ * process monitors the os through it: the monitoring fails, is restarted, and shares a new state file.
+ */
+public class SharedDirectoryRemovalDemo {
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        final String runtimeDirectory = System.getenv("XDG_RUNTIME_DIR");
+        if (runtimeDirectory == null) {
+            System.out.println("XDG_RUNTIME_DIR is not set, the monitoring isn't shared");
+            return;
+        }
+        OsThemeDetector.enableSharedMonitoring();
+        final OsThemeDetector detector = OsThemeDetector.getDetector();
+        detector.registerListener(isDark -> System.out.println("OS is dark: " + isDark));
+        Thread.sleep(500);
+        System.out.println("Before the removal: " + describe(detector.getMonitorHealth()));
+
+        final Path directory = Paths.get(runtimeDirectory, "jSystemThemeDetector");
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+        System.out.println("Deleted " + directory);
+
+        for (int i = 0; i < 10; i++) {
+            Thread.sleep(500);
+            System.out.println(describe(detector.getMonitorHealth()) + ", directory exists: " + Files.exists(directory));
+        }
+        detector.close();
+    }
+
+    private static String describe(MonitorHealth health) {
+        return health.getState() + " after " + health.getRestarts() + " restarts (" + health.getLastFailure() + ")";
+    }
+}
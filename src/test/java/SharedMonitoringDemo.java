@@ -0,0 +1,19 @@
+import com.jthemedetecor.OsThemeDetector;
+
+/**
+ * Start it in several terminals of the same desktop session: only one of the processes monitors the os,
+ * the others follow the state it publishes. Stopping that process hands the monitoring over to another one.
+ */
+public class SharedMonitoringDemo {
+
+    public static void main(String[] args) throws InterruptedException {
+        OsThemeDetector.enableSharedMonitoring();
+        OsThemeDetector.closeOnShutdown();
+        final OsThemeDetector detector = OsThemeDetector.getDetector();
+        final long pid = ProcessHandle.current().pid();
+
+        System.out.println("Process " + pid + ", OS is dark: " + detector.isDark());
+        detector.registerListener(isDark -> System.out.println("Process " + pid + ", OS is dark: " + isDark));
+        Thread.currentThread().join();
+    }
+}
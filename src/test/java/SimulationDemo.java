@@ -0,0 +1,36 @@
+import com.jthemedetecor.SimulatedThemeDetector;
+import com.jthemedetecor.SimulationReport;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Load-tests the listener fan-out with a {@link SimulatedThemeDetector}: registers the given number of listeners,
+ * replays the given timeline and prints the report.
+ * <p>
+ * Arguments: {@code [listeners] [timeline]}, e.g. {@code 50 "1000@100,wait:200,20000@5000"}.
+ * The same detector is returned by {@code OsThemeDetector.getDetector()} when the
+ * {@code -Djthemedetector.simulation=<timeline>} system property is set.
+ */
+public class SimulationDemo {
+
+    public static void main(String[] args) throws ExecutionException, InterruptedException {
+        final int listenerCount = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+        final String timeline = args.length > 1 ? args[1] : "1000@100,wait:200,20000@5000";
+
+        final SimulatedThemeDetector detector = new SimulatedThemeDetector(timeline);
+        final LongAdder notifications = new LongAdder();
+        for (int i = 0; i < listenerCount; i++) {
+            final Consumer<Boolean> listener = isDark -> notifications.increment();
+            detector.registerListener(listener);
+        }
+
+        final SimulationReport report = detector.replay().get();
+        System.out.printf("Emitted %d changes at %.1f/s%n", report.getEmittedEvents(), report.getEmitRate());
+        System.out.printf("Delivered %d notifications at %.1f/s (%d dropped, %d failed, %d counted by the listeners)%n",
+                report.getDeliveredNotifications(), report.getDeliveryRate(),
+                report.getDroppedNotifications(), report.getFailedNotifications(), notifications.sum());
+        report.getListenerStatistics().stream().limit(3).forEach(System.out::println);
+    }
+}
@@ -0,0 +1,30 @@
+import com.jthemedetecor.OsThemeDetector;
+
+/**
+ * Measures the time-to-first-{@link OsThemeDetector#getDetector()} of a fresh JVM, including the platform probing.
+ * Run it several times, every run measures a single cold start. With the {@code --cached} argument the startup cache
+ * is enabled, so the runs after the first one start from the cached detector and theme.
+ */
+public class StartupBenchmark {
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("--cached")) {
+            OsThemeDetector.enableStartupCache();
+        }
+        final long start = System.nanoTime();
+        final OsThemeDetector detector = OsThemeDetector.getDetector();
+        final long detectorCreated = System.nanoTime();
+        final boolean dark = detector.isDark();
+        final long firstAnswer = System.nanoTime();
+        final boolean supported = OsThemeDetector.isSupported();
+        final long supportChecked = System.nanoTime();
+
+        System.out.printf("getDetector(): %.2f ms (%s)%n", millis(start, detectorCreated), detector.getClass().getSimpleName());
+        System.out.printf("first isDark(): %.2f ms (%b)%n", millis(detectorCreated, firstAnswer), dark);
+        System.out.printf("isSupported(): %.2f ms (%b)%n", millis(firstAnswer, supportChecked), supported);
+        System.out.printf("JVM uptime: %d ms%n", java.lang.management.ManagementFactory.getRuntimeMXBean().getUptime());
+    }
+
+    private static double millis(long from, long to) {
+        return (to - from) / 1_000_000.0;
+    }
+}